@@ -0,0 +1,73 @@
+package com.restaurant.orderservice.config;
+
+import java.security.interfaces.RSAPublicKey;
+import java.time.Duration;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.NimbusReactiveJwtDecoder;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+
+// Decodes tokens from a fixed population of users, as the resource server filter chain does
+// for every request, with and without the verified-token cache in front of the RS256 check.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class JwtDecoderBenchmark {
+
+    @Param({"false", "true"})
+    private boolean cached;
+
+    @Param({"1000"})
+    private int users;
+
+    private ReactiveJwtDecoder decoder;
+    private String[] tokens;
+    private int next;
+
+    @Setup
+    public void setup() throws JOSEException {
+        RSAKey key = new RSAKeyGenerator(2048).generate();
+        var verifier = NimbusReactiveJwtDecoder.withPublicKey((RSAPublicKey) key.toPublicKey()).build();
+        var jwtCacheProperties = new JwtCacheProperties(true, 10000, Duration.ofMinutes(5), Duration.ofSeconds(30),
+                Duration.ofSeconds(3));
+        this.decoder = cached
+                ? new CachingJwtDecoder(verifier, jwtCacheProperties, new SimpleMeterRegistry())
+                : verifier;
+        var signer = new RSASSASigner(key);
+        var expiresAt = new Date(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1));
+        this.tokens = new String[users];
+        for (int user = 0; user < users; user++) {
+            var claims = new JWTClaimsSet.Builder().subject("user-" + user).expirationTime(expiresAt).build();
+            var jwt = new SignedJWT(new JWSHeader(JWSAlgorithm.RS256), claims);
+            jwt.sign(signer);
+            tokens[user] = jwt.serialize();
+        }
+    }
+
+    @Benchmark
+    public Jwt decode() {
+        var token = tokens[next];
+        next = (next + 1) % tokens.length;
+        return decoder.decode(token).block();
+    }
+}
@@ -0,0 +1,109 @@
+package com.restaurant.orderservice.domain;
+
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.restaurant.orderservice.config.ClientProperties;
+import com.restaurant.orderservice.config.DispatchProperties;
+import com.restaurant.orderservice.config.OrderEventsProperties;
+import com.restaurant.orderservice.config.OutboxProperties;
+import com.restaurant.orderservice.event.OrderEventPublisher;
+import com.restaurant.orderservice.event.OrderOutboxRelay;
+import com.restaurant.orderservice.event.OrderOutboxRepository;
+import com.restaurant.orderservice.web.Food;
+import com.restaurant.orderservice.web.FoodClient;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+import org.springframework.transaction.reactive.TransactionCallback;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.web.reactive.function.client.WebClient;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class OrderServiceBenchmark {
+
+    private static final Food FOOD = new Food("1234567890", "Pizza margherita", "Mario", 9.90);
+
+    private OrderService orderService;
+
+    @Setup
+    public void setup() {
+        var meterRegistry = new SimpleMeterRegistry();
+        var clientProperties = new Binder(new MapConfigurationPropertySource(Map.of(
+                "restaurant.tasty-service-uri", "http://localhost:9001")))
+                .bind("restaurant", ClientProperties.class).get();
+        var foodClient = new FoodClient(WebClient.create(), clientProperties, CircuitBreakerRegistry.ofDefaults(),
+                BulkheadRegistry.ofDefaults(), meterRegistry) {
+            @Override
+            public Mono<Food> lookupFood(String ref) {
+                return Mono.just(FOOD);
+            }
+        };
+        var dispatchProperties = new Binder(new MapConfigurationPropertySource(Map.of()))
+                .bindOrCreate("restaurant.dispatch", DispatchProperties.class);
+        // Publishing on commit is off, so the relay never reaches the (unstarted) publisher.
+        var outboxProperties = new Binder(new MapConfigurationPropertySource(Map.of(
+                "restaurant.outbox.publish-on-commit", "false")))
+                .bind("restaurant.outbox", OutboxProperties.class).get();
+        var outboxRepository = stub(OrderOutboxRepository.class);
+        var transactionalOperator = new PassThroughTransactionalOperator();
+        var outboxRelay = new OrderOutboxRelay(outboxRepository,
+                new OrderEventPublisher(null, outboxProperties, meterRegistry),
+                transactionalOperator, outboxProperties, meterRegistry);
+        var orderStatusHub = new OrderStatusHub(new Binder(new MapConfigurationPropertySource(Map.of()))
+                .bindOrCreate("restaurant.order-events", OrderEventsProperties.class), meterRegistry);
+        this.orderService = new OrderService(stub(OrderRepository.class), stub(OrderSummaryRepository.class),
+                outboxRepository, outboxRelay, orderStatusHub, foodClient, transactionalOperator,
+                dispatchProperties, meterRegistry);
+    }
+
+    @Benchmark
+    public Order buildAcceptedOrder() {
+        return OrderService.buildAcceptedOrder(FOOD, 2);
+    }
+
+    @Benchmark
+    public Order submitOrder() {
+        return orderService.submitOrder(FOOD.ref(), 2).block();
+    }
+
+    // Repositories echo what they are given, so the benchmark measures the operator chain only.
+    @SuppressWarnings("unchecked")
+    private static <T> T stub(Class<T> repositoryType) {
+        return (T) Proxy.newProxyInstance(repositoryType.getClassLoader(), new Class<?>[]{repositoryType},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "save" -> Mono.just(args[0]);
+                    case "saveAll" -> Flux.fromIterable((Iterable<?>) args[0]);
+                    case "recordSubmitted" -> Mono.just(1);
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private static class PassThroughTransactionalOperator implements TransactionalOperator {
+
+        @Override
+        public <T> Mono<T> transactional(Mono<T> mono) {
+            return mono;
+        }
+
+        @Override
+        public <T> Flux<T> execute(TransactionCallback<T> action) {
+            throw new UnsupportedOperationException("execute");
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.restaurant.orderservice.web;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.restaurant.orderservice.config.CodecConfig;
+import com.restaurant.orderservice.domain.Order;
+import com.restaurant.orderservice.domain.OrderStatus;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.Encoder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.codec.json.Jackson2SmileEncoder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+// Encodes a full page of orders the way GET /orders does, per format and with or without
+// gzip. payloadBytes is the size of one encoded page as it would go on the wire; JMH sums it
+// over the measurement iterations, so divide by their count.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class OrderCodecBenchmark {
+
+    private static final int PAGE_SIZE = 200;
+    private static final ResolvableType ORDER_LIST = ResolvableType.forClassWithGenerics(List.class, Order.class);
+
+    @Param({"json", "smile"})
+    public String format;
+
+    @Param({"false", "true"})
+    public boolean gzip;
+
+    private Encoder<Object> encoder;
+    private MediaType mediaType;
+    private List<Order> orders;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Payload {
+
+        public long payloadBytes;
+    }
+
+    @Setup
+    public void setup() {
+        var builder = Jackson2ObjectMapperBuilder.json();
+        if ("smile".equals(format)) {
+            var smileMapper = new ObjectMapper(new SmileFactory());
+            builder.configure(smileMapper);
+            this.encoder = new Jackson2SmileEncoder(smileMapper, CodecConfig.APPLICATION_SMILE);
+            this.mediaType = CodecConfig.APPLICATION_SMILE;
+        } else {
+            this.encoder = new Jackson2JsonEncoder(builder.build());
+            this.mediaType = MediaType.APPLICATION_JSON;
+        }
+        var createdDate = Instant.parse("2022-10-01T10:00:00Z");
+        this.orders = LongStream.range(0, PAGE_SIZE)
+                .mapToObj(id -> new Order(id, "1234567890", "Pizza margherita - Mario", 2, 9.90,
+                        OrderStatus.ACCEPTED, createdDate.plusSeconds(id), createdDate.plusSeconds(id),
+                        "bjorn", "bjorn", 1))
+                .toList();
+    }
+
+    @Benchmark
+    public int encodeOrders(Payload payload) throws IOException {
+        DataBuffer buffer = encoder.encodeValue(orders, DefaultDataBufferFactory.sharedInstance,
+                ORDER_LIST, mediaType, null);
+        try {
+            var size = gzip ? gzip(buffer) : buffer.readableByteCount();
+            payload.payloadBytes = size;
+            return size;
+        } finally {
+            DataBufferUtils.release(buffer);
+        }
+    }
+
+    private static int gzip(DataBuffer buffer) throws IOException {
+        var compressed = new ByteArrayOutputStream(buffer.readableByteCount());
+        try (var gzipStream = new GZIPOutputStream(compressed)) {
+            buffer.asInputStream().transferTo(gzipStream);
+        }
+        return compressed.size();
+    }
+}
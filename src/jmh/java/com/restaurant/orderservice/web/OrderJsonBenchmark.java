@@ -0,0 +1,48 @@
+package com.restaurant.orderservice.web;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.restaurant.orderservice.domain.Order;
+import com.restaurant.orderservice.domain.OrderStatus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class OrderJsonBenchmark {
+
+    private ObjectMapper objectMapper;
+    private Order order;
+    private String orderRequestJson;
+
+    @Setup
+    public void setup() {
+        this.objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        this.order = new Order(394L, "1234567890", "Pizza margherita - Mario", 2, 9.90, OrderStatus.ACCEPTED,
+                Instant.now(), Instant.now(), "bjorn", "bjorn", 1);
+        this.orderRequestJson = """
+                {"ref":"1234567890","quantity":2}
+                """;
+    }
+
+    @Benchmark
+    public String serializeOrder() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(order);
+    }
+
+    @Benchmark
+    public OrderRequest deserializeOrderRequest() throws JsonProcessingException {
+        return objectMapper.readValue(orderRequestJson, OrderRequest.class);
+    }
+}
@@ -0,0 +1,92 @@
+package com.restaurant.orderservice.loadtest;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.restaurant.orderservice.web.Food;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+
+class FoodServiceStandIn implements AutoCloseable {
+
+    private final MockWebServer server = new MockWebServer();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final LoadTestProperties properties;
+
+    FoodServiceStandIn(LoadTestProperties properties) {
+        this.properties = properties;
+    }
+
+    void start() throws IOException {
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return respond(request);
+            }
+        });
+        server.start();
+    }
+
+    String uri() {
+        return server.url("/").toString();
+    }
+
+    List<String> refs() {
+        return IntStream.range(0, properties.foodRefs())
+                .mapToObj(FoodServiceStandIn::ref)
+                .toList();
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.shutdown();
+    }
+
+    private MockResponse respond(RecordedRequest request) {
+        if (ThreadLocalRandom.current().nextDouble() < properties.foodErrorRate()) {
+            return delayed(new MockResponse().setResponseCode(503));
+        }
+        var url = request.getRequestUrl();
+        if (url == null || !url.encodedPath().startsWith("/food")) {
+            return new MockResponse().setResponseCode(404);
+        }
+        var refs = url.queryParameter("refs");
+        var body = refs != null
+                ? json(Arrays.stream(refs.split(",")).map(FoodServiceStandIn::food).toList())
+                : json(food(url.pathSegments().get(url.pathSize() - 1)));
+        return delayed(new MockResponse()
+                .setHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .setBody(body));
+    }
+
+    private MockResponse delayed(MockResponse response) {
+        return response.setHeadersDelay(properties.foodLatency().toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private String json(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    private static String ref(int index) {
+        return String.format("%010d", index);
+    }
+
+    private static Food food(String ref) {
+        return new Food(ref, "Dish " + ref, "Chef " + ref.charAt(ref.length() - 1), 9.90);
+    }
+}
@@ -0,0 +1,57 @@
+package com.restaurant.orderservice.loadtest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Date;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+
+// Tokens are signed with a throwaway key whose public half the application is pointed at
+// through spring.security.oauth2.resourceserver.jwt.public-key-location.
+class JwtMinter {
+
+    private final KeyPair keyPair;
+
+    JwtMinter() throws NoSuchAlgorithmException {
+        var generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        this.keyPair = generator.generateKeyPair();
+    }
+
+    Path writePublicKey(Path directory) throws IOException {
+        var pem = "-----BEGIN PUBLIC KEY-----\n"
+                + Base64.getMimeEncoder().encodeToString(keyPair.getPublic().getEncoded())
+                + "\n-----END PUBLIC KEY-----\n";
+        return Files.writeString(Files.createDirectories(directory).resolve("loadtest-public-key.pem"), pem);
+    }
+
+    String mint(String subject, Duration validity) {
+        var now = Instant.now();
+        var claims = new JWTClaimsSet.Builder()
+                .subject(subject)
+                .claim("preferred_username", subject)
+                .issuer("order-service-loadtest")
+                .issueTime(Date.from(now))
+                .expirationTime(Date.from(now.plus(validity)))
+                .build();
+        var jwt = new SignedJWT(new JWSHeader(JWSAlgorithm.RS256), claims);
+        try {
+            jwt.sign(new RSASSASigner(keyPair.getPrivate()));
+        } catch (JOSEException exception) {
+            throw new IllegalStateException("Cannot sign load test token", exception);
+        }
+        return jwt.serialize();
+    }
+}
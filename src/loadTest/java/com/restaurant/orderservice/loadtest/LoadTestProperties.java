@@ -0,0 +1,50 @@
+package com.restaurant.orderservice.loadtest;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+public record LoadTestProperties(
+
+        @DefaultValue("200")
+        int rps,
+
+        @DefaultValue("30s")
+        Duration duration,
+
+        @DefaultValue("10s")
+        Duration warmup,
+
+        @DefaultValue("10")
+        int users,
+
+        @DefaultValue("100")
+        int foodRefs,
+
+        @DefaultValue("20ms")
+        Duration foodLatency,
+
+        @DefaultValue("0.0")
+        double foodErrorRate,
+
+        @DefaultValue("500")
+        int maxConnections,
+
+        @DefaultValue("false")
+        boolean jwtCache,
+
+        String r2dbcUrl,
+
+        String jdbcUrl,
+
+        @DefaultValue("user")
+        String username,
+
+        @DefaultValue("password")
+        String password,
+
+        @DefaultValue("build/reports/loadtest")
+        Path reportDir
+) {
+}
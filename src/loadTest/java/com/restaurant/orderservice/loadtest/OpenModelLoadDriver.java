@@ -0,0 +1,77 @@
+package com.restaurant.orderservice.loadtest;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongFunction;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// Requests are issued on a fixed schedule whether or not earlier ones have completed, and
+// latency is measured from the scheduled start, so a stalled server shows up in the tail
+// instead of lowering the offered rate.
+class OpenModelLoadDriver {
+
+    private static final long HIGHEST_TRACKABLE_LATENCY = TimeUnit.MINUTES.toNanos(1);
+
+    private final int rps;
+
+    OpenModelLoadDriver(int rps) {
+        this.rps = rps;
+    }
+
+    Result run(String endpoint, Duration duration, LongFunction<Mono<?>> request) {
+        var intervalNanos = TimeUnit.SECONDS.toNanos(1) / rps;
+        var histogram = new ConcurrentHistogram(HIGHEST_TRACKABLE_LATENCY, 3);
+        var errors = new AtomicLong();
+        var start = System.nanoTime();
+        Flux.interval(Duration.ofNanos(intervalNanos))
+                .take(duration.toNanos() / intervalNanos)
+                .flatMap(sequence -> {
+                    var scheduled = start + (sequence + 1) * intervalNanos;
+                    return request.apply(sequence)
+                            .doOnSuccess(response -> histogram.recordValue(
+                                    Math.min(System.nanoTime() - scheduled, HIGHEST_TRACKABLE_LATENCY)))
+                            .onErrorResume(exception -> {
+                                errors.incrementAndGet();
+                                return Mono.empty();
+                            });
+                }, Integer.MAX_VALUE)
+                .blockLast();
+        return new Result(endpoint, histogram, errors.get(), Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    record Result(String endpoint, Histogram histogram, long errors, Duration elapsed) {
+
+        double throughput() {
+            return histogram.getTotalCount() / (elapsed.toNanos() / 1e9);
+        }
+
+        void print(PrintStream out) {
+            out.printf("%-14s requests=%d errors=%d throughput=%.1f req/s "
+                            + "p50=%.2fms p90=%.2fms p99=%.2fms p99.9=%.2fms max=%.2fms%n",
+                    endpoint, histogram.getTotalCount() + errors, errors, throughput(),
+                    millis(50), millis(90), millis(99), millis(99.9), histogram.getMaxValue() / 1e6);
+        }
+
+        Path writeHistogram(Path directory) throws IOException {
+            var file = Files.createDirectories(directory)
+                    .resolve(endpoint.toLowerCase().replaceAll("[^a-z0-9]+", "-") + ".hgrm");
+            try (var out = new PrintStream(Files.newOutputStream(file))) {
+                histogram.outputPercentileDistribution(out, 1e6);
+            }
+            return file;
+        }
+
+        private double millis(double percentile) {
+            return histogram.getValueAtPercentile(percentile) / 1e6;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.restaurant.orderservice.loadtest;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.function.LongFunction;
+import java.util.stream.IntStream;
+
+import com.restaurant.orderservice.OrderServiceApplication;
+import com.restaurant.orderservice.web.OrderRequest;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.utility.DockerImageName;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+import org.springframework.cloud.stream.binder.test.TestChannelBinderConfiguration;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+
+// Boots the application against local stand-ins: a MockWebServer food service, the test
+// binder instead of RabbitMQ and a throwaway or existing Postgres. Tokens are minted locally.
+public class OrderServiceLoadTest {
+
+    public static void main(String[] args) throws Exception {
+        var properties = new Binder(new MapConfigurationPropertySource(System.getProperties()))
+                .bindOrCreate("loadtest", LoadTestProperties.class);
+        var results = new ArrayList<OpenModelLoadDriver.Result>();
+
+        PostgreSQLContainer<?> postgresql = null;
+        try (var foodService = new FoodServiceStandIn(properties)) {
+            foodService.start();
+            String r2dbcUrl = properties.r2dbcUrl();
+            String jdbcUrl = properties.jdbcUrl();
+            String username = properties.username();
+            String password = properties.password();
+            if (r2dbcUrl == null) {
+                postgresql = new PostgreSQLContainer<>(DockerImageName.parse("postgres:14.4"));
+                postgresql.start();
+                r2dbcUrl = String.format("r2dbc:postgresql://%s:%s/%s", postgresql.getHost(),
+                        postgresql.getMappedPort(PostgreSQLContainer.POSTGRESQL_PORT), postgresql.getDatabaseName());
+                jdbcUrl = postgresql.getJdbcUrl();
+                username = postgresql.getUsername();
+                password = postgresql.getPassword();
+            }
+
+            var jwtMinter = new JwtMinter();
+            var publicKey = jwtMinter.writePublicKey(properties.reportDir());
+            try (var context = new SpringApplicationBuilder(OrderServiceApplication.class,
+                    TestChannelBinderConfiguration.class)
+                    .run("--server.port=0",
+                            "--spring.r2dbc.url=" + r2dbcUrl,
+                            "--spring.r2dbc.username=" + username,
+                            "--spring.r2dbc.password=" + password,
+                            "--spring.flyway.url=" + jdbcUrl,
+                            "--spring.flyway.user=" + username,
+                            "--spring.flyway.password=" + password,
+                            "--spring.security.oauth2.resourceserver.jwt.issuer-uri=",
+                            "--spring.security.oauth2.resourceserver.jwt.public-key-location=file:" + publicKey,
+                            "--restaurant.tasty-service-uri=" + foodService.uri(),
+                            "--restaurant.outbox.publisher-confirms=false",
+                            "--restaurant.jwt-cache.enabled=" + properties.jwtCache(),
+                            "--management.health.rabbit.enabled=false")) {
+                results.addAll(drive(properties, context, jwtMinter, foodService.refs()));
+            }
+        } finally {
+            if (postgresql != null) {
+                postgresql.stop();
+            }
+        }
+
+        System.out.println();
+        for (var result : results) {
+            result.print(System.out);
+            System.out.println("  histogram: " + result.writeHistogram(properties.reportDir()));
+        }
+        System.exit(0);
+    }
+
+    private static List<OpenModelLoadDriver.Result> drive(LoadTestProperties properties,
+                                                          ConfigurableApplicationContext context,
+                                                          JwtMinter jwtMinter, List<String> refs) {
+        var port = context.getEnvironment().getRequiredProperty("local.server.port");
+        var connectionProvider = ConnectionProvider.builder("loadtest")
+                .maxConnections(properties.maxConnections())
+                .pendingAcquireMaxCount(-1)
+                .build();
+        var webClient = WebClient.builder()
+                .baseUrl("http://localhost:" + port)
+                .clientConnector(new ReactorClientHttpConnector(HttpClient.create(connectionProvider)))
+                .build();
+        var validity = properties.warmup().plus(properties.duration()).multipliedBy(2).plusHours(1);
+        var tokens = IntStream.range(0, properties.users())
+                .mapToObj(user -> jwtMinter.mint("loadtest-user-" + user, validity))
+                .toList();
+        var driver = new OpenModelLoadDriver(properties.rps());
+        var endpoints = new LinkedHashMap<String, LongFunction<Mono<?>>>();
+        endpoints.put("POST /orders", sequence -> webClient.post()
+                .uri("/orders")
+                .headers(headers -> headers.setBearerAuth(tokens.get((int) (sequence % tokens.size()))))
+                .bodyValue(new OrderRequest(refs.get((int) (sequence % refs.size())), 1))
+                .retrieve()
+                .toBodilessEntity());
+        endpoints.put("GET /orders", sequence -> webClient.get()
+                .uri("/orders")
+                .headers(headers -> headers.setBearerAuth(tokens.get((int) (sequence % tokens.size()))))
+                .retrieve()
+                .toBodilessEntity());
+
+        endpoints.forEach((endpoint, request) -> driver.run(endpoint, properties.warmup(), request));
+        var results = new ArrayList<OpenModelLoadDriver.Result>();
+        endpoints.forEach((endpoint, request) -> results.add(driver.run(endpoint, properties.duration(), request)));
+        connectionProvider.dispose();
+        return results;
+    }
+}
@@ -0,0 +1,197 @@
+package com.restaurant.orderservice.loadtest;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.flywaydb.core.Flyway;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.utility.DockerImageName;
+
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+
+// Seeds orders on the schema as it was before the compact layout (V7), records the size of
+// the orders partitions and their indexes and how long the query behind findAllByCreatedBy
+// takes, then migrates to the latest schema and records the same again. It needs an empty
+// database, and without a JDBC URL it starts one.
+public class SchemaFootprintBenchmark {
+
+    private static final String BEFORE_COMPACT_LAYOUT = "7";
+
+    // Every tenth order is rejected, without food; the rest cycle through the foods.
+    private static final String SEED_ORDERS = """
+            INSERT INTO orders (food_ref, food_description, food_price, quantity, status, created_date,
+                                last_modified_date, version, created_by, last_modified_by)
+            SELECT lpad(food::text, 10, '0'),
+                   CASE WHEN rejected THEN NULL
+                        ELSE format('Seasonal dish %%s with roasted vegetables - Chef %%s', food, food %% 25) END,
+                   CASE WHEN rejected THEN NULL ELSE 5 + food * 0.25 END,
+                   1 + n %% 5,
+                   CASE WHEN rejected THEN 'REJECTED' WHEN n %% 10 < 4 THEN 'DISPATCHED' ELSE 'ACCEPTED' END,
+                   created_date, created_date, 1, 'user-' || n %% %2$d, 'user-' || n %% %2$d
+            FROM generate_series(1, %1$d) n,
+                 LATERAL (SELECT n / %2$d %% %3$d AS food,
+                                 n %% 10 = 0 AS rejected,
+                                 now()::timestamp - (n %% 5000) * interval '15 minutes' AS created_date) generated
+            """;
+
+    private static final String PARTITION_SIZES = """
+            SELECT coalesce(sum(pg_table_size(relid)), 0), coalesce(sum(pg_indexes_size(relid)), 0),
+                   coalesce(pg_total_relation_size(to_regclass('food_snapshot')), 0)
+            FROM pg_partition_tree('orders')
+            WHERE isleaf
+            """;
+
+    record Measurement(String schema, long migrationMillis, long tableBytes, long indexBytes, long snapshotBytes,
+                       long rowsPerScan, long blocksPerScan, long medianMicros, long p95Micros) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        var properties = new Binder(new MapConfigurationPropertySource(System.getProperties()))
+                .bindOrCreate("footprint", SchemaFootprintProperties.class);
+        Files.createDirectories(properties.reportDir());
+
+        PostgreSQLContainer<?> postgresql = null;
+        var measurements = new ArrayList<Measurement>();
+        try {
+            var jdbcUrl = properties.jdbcUrl();
+            var username = properties.username();
+            var password = properties.password();
+            if (jdbcUrl == null) {
+                postgresql = new PostgreSQLContainer<>(DockerImageName.parse("postgres:14.4"));
+                postgresql.start();
+                jdbcUrl = postgresql.getJdbcUrl();
+                username = postgresql.getUsername();
+                password = postgresql.getPassword();
+            }
+
+            var before = Flyway.configure()
+                    .dataSource(jdbcUrl, username, password)
+                    .target(BEFORE_COMPACT_LAYOUT)
+                    .load();
+            if (before.info().current() != null) {
+                throw new IllegalStateException("The database already has a schema, but the benchmark needs an empty one");
+            }
+            before.migrate();
+            try (var connection = DriverManager.getConnection(jdbcUrl, username, password)) {
+                seed(connection, properties);
+                measurements.add(measure(connection, properties, "V" + BEFORE_COMPACT_LAYOUT, 0, "orders"));
+
+                var started = System.nanoTime();
+                Flyway.configure().dataSource(jdbcUrl, username, password).load().migrate();
+                var migrationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+                measurements.add(measure(connection, properties, "latest", migrationMillis, "order_details"));
+            }
+        } finally {
+            if (postgresql != null) {
+                postgresql.stop();
+            }
+        }
+
+        System.out.println();
+        System.out.printf("%d orders of %d users and %d foods, %d scans%n", properties.orders(), properties.users(),
+                properties.foods(), properties.scans());
+        for (var measurement : measurements) {
+            System.out.printf("%-7s table %6.1f MiB, indexes %6.1f MiB, food_snapshot %6.1f KiB, "
+                            + "%d rows and %d blocks per scan, median %d us, p95 %d us, migrated in %d ms%n",
+                    measurement.schema(), measurement.tableBytes() / 1048576.0, measurement.indexBytes() / 1048576.0,
+                    measurement.snapshotBytes() / 1024.0, measurement.rowsPerScan(), measurement.blocksPerScan(),
+                    measurement.medianMicros(), measurement.p95Micros(), measurement.migrationMillis());
+        }
+        System.out.println("  measurements: " + writeMeasurements(properties.reportDir(), measurements));
+        System.exit(0);
+    }
+
+    private static void seed(Connection connection, SchemaFootprintProperties properties) throws SQLException {
+        try (var statement = connection.createStatement()) {
+            // The seeded orders go back 52 days, so their months need partitions.
+            statement.execute("SELECT create_orders_partitions((date_trunc('month', now()) - interval '2 months')::timestamp, 3)");
+            statement.execute(SEED_ORDERS.formatted(properties.orders(), properties.users(), properties.foods()));
+        }
+    }
+
+    private static Measurement measure(Connection connection, SchemaFootprintProperties properties, String schema,
+                                       long migrationMillis, String ordersRelation) throws Exception {
+        long tableBytes;
+        long indexBytes;
+        long snapshotBytes;
+        try (var statement = connection.createStatement()) {
+            statement.execute("VACUUM ANALYZE");
+            try (var sizes = statement.executeQuery(PARTITION_SIZES)) {
+                sizes.next();
+                tableBytes = sizes.getLong(1);
+                indexBytes = sizes.getLong(2);
+                snapshotBytes = sizes.getLong(3);
+            }
+        }
+
+        // The query Spring Data derives for findAllByCreatedBy, against the table before and
+        // the view after.
+        var query = "SELECT * FROM " + ordersRelation + " WHERE created_by = ?";
+        long rows = 0;
+        var durations = new long[properties.scans()];
+        try (var statement = connection.prepareStatement(query)) {
+            for (int user = 0; user < properties.users(); user++) {
+                scan(statement, user);
+            }
+            for (int i = 0; i < durations.length; i++) {
+                var started = System.nanoTime();
+                rows += scan(statement, (int) ((i * 7919L) % properties.users()));
+                durations[i] = System.nanoTime() - started;
+            }
+        }
+        Arrays.sort(durations);
+        return new Measurement(schema, migrationMillis, tableBytes, indexBytes, snapshotBytes,
+                rows / durations.length, blocksPerScan(connection, ordersRelation),
+                TimeUnit.NANOSECONDS.toMicros(durations[durations.length / 2]),
+                TimeUnit.NANOSECONDS.toMicros(durations[(int) (durations.length * 0.95)]));
+    }
+
+    private static long scan(PreparedStatement statement, int user) throws SQLException {
+        statement.setString(1, "user-" + user);
+        long rows = 0;
+        try (var results = statement.executeQuery()) {
+            var columns = results.getMetaData().getColumnCount();
+            while (results.next()) {
+                for (int column = 1; column <= columns; column++) {
+                    results.getObject(column);
+                }
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+    // Shared buffers the scan of one user touches, which unlike its duration does not depend
+    // on what else the machine is doing.
+    private static long blocksPerScan(Connection connection, String ordersRelation) throws Exception {
+        try (var statement = connection.createStatement();
+             var results = statement.executeQuery("EXPLAIN (ANALYZE, BUFFERS, FORMAT JSON) SELECT * FROM "
+                     + ordersRelation + " WHERE created_by = 'user-0'")) {
+            results.next();
+            var plan = new ObjectMapper().readTree(results.getString(1)).get(0).get("Plan");
+            return plan.get("Shared Hit Blocks").asLong() + plan.get("Shared Read Blocks").asLong();
+        }
+    }
+
+    private static Path writeMeasurements(Path reportDir, List<Measurement> measurements) throws Exception {
+        var file = reportDir.resolve("schema-footprint.csv");
+        var lines = new ArrayList<String>();
+        lines.add("schema,migration_ms,table_bytes,index_bytes,snapshot_bytes,rows_per_scan,blocks_per_scan,median_us,p95_us");
+        measurements.forEach(measurement -> lines.add(String.join(",", measurement.schema(),
+                String.valueOf(measurement.migrationMillis()), String.valueOf(measurement.tableBytes()),
+                String.valueOf(measurement.indexBytes()), String.valueOf(measurement.snapshotBytes()),
+                String.valueOf(measurement.rowsPerScan()), String.valueOf(measurement.blocksPerScan()),
+                String.valueOf(measurement.medianMicros()), String.valueOf(measurement.p95Micros()))));
+        return Files.write(file, lines);
+    }
+}
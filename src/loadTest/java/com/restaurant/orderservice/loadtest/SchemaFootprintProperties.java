@@ -0,0 +1,32 @@
+package com.restaurant.orderservice.loadtest;
+
+import java.nio.file.Path;
+
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+public record SchemaFootprintProperties(
+
+        @DefaultValue("1000000")
+        int orders,
+
+        @DefaultValue("2000")
+        int users,
+
+        @DefaultValue("200")
+        int foods,
+
+        @DefaultValue("2000")
+        int scans,
+
+        String jdbcUrl,
+
+        @DefaultValue("user")
+        String username,
+
+        @DefaultValue("password")
+        String password,
+
+        @DefaultValue("build/reports/schema")
+        Path reportDir
+) {
+}
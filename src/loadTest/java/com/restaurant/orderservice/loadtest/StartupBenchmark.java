@@ -0,0 +1,188 @@
+package com.restaurant.orderservice.loadtest;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.restaurant.orderservice.OrderServiceApplication;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.utility.DockerImageName;
+
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+
+// Starts the application in a fresh JVM per run, with and without the class data sharing
+// archive, and records the time until the readiness probe passes and the resident memory at
+// that point. The application runs from a plain jar classpath, as CDS only archives classes
+// loaded from jar files.
+public class StartupBenchmark {
+
+    private static final Duration POLL_INTERVAL = Duration.ofMillis(10);
+
+    record Sample(String mode, int run, long readyMillis, long residentKilobytes) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        var properties = new Binder(new MapConfigurationPropertySource(System.getProperties()))
+                .bindOrCreate("startup", StartupBenchmarkProperties.class);
+        if (properties.classpath() == null) {
+            throw new IllegalArgumentException("startup.classpath must list the application jars");
+        }
+        Files.createDirectories(properties.reportDir());
+
+        var modes = new LinkedHashMap<String, List<String>>();
+        modes.put("default", List.of());
+        if (properties.cdsArchive() != null && Files.exists(properties.cdsArchive())) {
+            modes.put("cds", List.of("-XX:SharedArchiveFile=" + properties.cdsArchive()));
+        }
+
+        PostgreSQLContainer<?> postgresql = null;
+        var samples = new ArrayList<Sample>();
+        try {
+            var databaseArgs = List.of(
+                    "--spring.r2dbc.url=" + properties.r2dbcUrl(),
+                    "--spring.flyway.url=" + properties.jdbcUrl(),
+                    "--spring.r2dbc.username=" + properties.username(),
+                    "--spring.r2dbc.password=" + properties.password());
+            if (properties.r2dbcUrl() == null) {
+                postgresql = new PostgreSQLContainer<>(DockerImageName.parse("postgres:14.4"));
+                postgresql.start();
+                databaseArgs = List.of(
+                        String.format("--spring.r2dbc.url=r2dbc:postgresql://%s:%s/%s", postgresql.getHost(),
+                                postgresql.getMappedPort(PostgreSQLContainer.POSTGRESQL_PORT),
+                                postgresql.getDatabaseName()),
+                        "--spring.flyway.url=" + postgresql.getJdbcUrl(),
+                        "--spring.r2dbc.username=" + postgresql.getUsername(),
+                        "--spring.r2dbc.password=" + postgresql.getPassword());
+            }
+            for (var mode : modes.entrySet()) {
+                for (int run = 0; run < properties.runs(); run++) {
+                    var sample = startOnce(properties, mode.getKey(), mode.getValue(), databaseArgs, run);
+                    System.out.printf("%-8s run %d: ready after %d ms, rss %d MiB%n", sample.mode(), run,
+                            sample.readyMillis(), sample.residentKilobytes() / 1024);
+                    samples.add(sample);
+                }
+            }
+        } finally {
+            if (postgresql != null) {
+                postgresql.stop();
+            }
+        }
+
+        System.out.println();
+        for (var mode : modes.keySet()) {
+            var modeSamples = samples.stream().filter(sample -> sample.mode().equals(mode)).toList();
+            System.out.printf("%-8s median ready %d ms, median rss %d MiB%n", mode,
+                    median(modeSamples.stream().mapToLong(Sample::readyMillis).toArray()),
+                    median(modeSamples.stream().mapToLong(Sample::residentKilobytes).toArray()) / 1024);
+        }
+        System.out.println("  samples: " + writeSamples(properties.reportDir(), samples));
+        System.exit(0);
+    }
+
+    private static Sample startOnce(StartupBenchmarkProperties properties, String mode, List<String> modeArgs,
+                                    List<String> databaseArgs, int run) throws Exception {
+        var port = freePort();
+        var command = new ArrayList<String>();
+        command.add(ProcessHandle.current().info().command().orElse("java"));
+        if (properties.jvmArgs() != null) {
+            command.addAll(properties.jvmArgs());
+        }
+        command.addAll(modeArgs);
+        command.addAll(List.of("-cp", properties.classpath(), OrderServiceApplication.class.getName(),
+                "--server.port=" + port,
+                "--spring.flyway.user=" + properties.username(),
+                "--spring.flyway.password=" + properties.password(),
+                "--management.health.rabbit.enabled=false"));
+        command.addAll(databaseArgs);
+
+        var client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+        var readiness = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/actuator/health/readiness"))
+                .timeout(Duration.ofSeconds(1))
+                .build();
+        var started = System.nanoTime();
+        var process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(properties.reportDir().resolve("startup-" + mode + "-" + run + ".log").toFile())
+                .start();
+        try {
+            var deadline = started + properties.readyTimeout().toNanos();
+            while (!isReady(client, readiness)) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException("The application exited with " + process.exitValue()
+                            + " before becoming ready");
+                }
+                if (System.nanoTime() > deadline) {
+                    throw new IllegalStateException("The application was not ready within "
+                            + properties.readyTimeout());
+                }
+                Thread.sleep(POLL_INTERVAL.toMillis());
+            }
+            var readyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+            return new Sample(mode, run, readyMillis, residentKilobytes(process.pid()));
+        } finally {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    private static boolean isReady(HttpClient client, HttpRequest readiness) throws InterruptedException {
+        try {
+            return client.send(readiness, HttpResponse.BodyHandlers.discarding()).statusCode() == 200;
+        } catch (IOException exception) {
+            return false;
+        }
+    }
+
+    // Linux only; elsewhere the resident memory is reported as -1.
+    private static long residentKilobytes(long pid) throws IOException {
+        var status = Path.of("/proc", String.valueOf(pid), "status");
+        if (!Files.exists(status)) {
+            return -1;
+        }
+        try (var lines = Files.lines(status)) {
+            return lines.filter(line -> line.startsWith("VmRSS:"))
+                    .map(line -> line.replaceAll("\\D", ""))
+                    .mapToLong(Long::parseLong)
+                    .findFirst()
+                    .orElse(-1);
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (var socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static long median(long[] values) {
+        if (values.length == 0) {
+            return -1;
+        }
+        var sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private static Path writeSamples(Path reportDir, List<Sample> samples) throws IOException {
+        var file = reportDir.resolve("startup.csv");
+        var lines = new ArrayList<String>();
+        lines.add("mode,run,ready_ms,rss_kb");
+        samples.forEach(sample -> lines.add(String.join(",", sample.mode(), String.valueOf(sample.run()),
+                String.valueOf(sample.readyMillis()), String.valueOf(sample.residentKilobytes()))));
+        return Files.write(file, lines);
+    }
+}
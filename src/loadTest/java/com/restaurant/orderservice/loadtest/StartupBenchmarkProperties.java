@@ -0,0 +1,36 @@
+package com.restaurant.orderservice.loadtest;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+public record StartupBenchmarkProperties(
+
+        @DefaultValue("5")
+        int runs,
+
+        String classpath,
+
+        Path cdsArchive,
+
+        List<String> jvmArgs,
+
+        @DefaultValue("60s")
+        Duration readyTimeout,
+
+        String r2dbcUrl,
+
+        String jdbcUrl,
+
+        @DefaultValue("user")
+        String username,
+
+        @DefaultValue("password")
+        String password,
+
+        @DefaultValue("build/reports/startup")
+        Path reportDir
+) {
+}
@@ -0,0 +1,98 @@
+package com.restaurant.orderservice.config;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import reactor.core.publisher.Mono;
+
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+
+// Remembers tokens that passed verification, keyed by their SHA-256 digest, until they
+// expire. Clients send the same token for minutes, so most requests skip the signature check
+// and the claim validation. Tokens without an expiry are never cached.
+public class CachingJwtDecoder implements ReactiveJwtDecoder {
+
+    private final ReactiveJwtDecoder delegate;
+    private final Cache<String, Jwt> cache;
+    private final Timer verification;
+    private final Counter timeSaved;
+
+    public CachingJwtDecoder(ReactiveJwtDecoder delegate, JwtCacheProperties jwtCacheProperties,
+                             MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.cache = CaffeineCacheMetrics.monitor(meterRegistry, Caffeine.newBuilder()
+                .maximumSize(jwtCacheProperties.maximumSize())
+                .expireAfter(new UntilTokenExpiry())
+                .recordStats()
+                .<String, Jwt>build(), "jwt");
+        this.verification = Timer.builder("security.jwt.verification")
+                .description("Time taken to verify a token the cache did not have")
+                .register(meterRegistry);
+        this.timeSaved = Counter.builder("security.jwt.cache.saved")
+                .description("Verification time saved by cache hits, estimated from the mean verification time")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Mono<Jwt> decode(String token) {
+        return Mono.defer(() -> {
+            var key = digest(token);
+            var cached = cache.getIfPresent(key);
+            // Expired entries may linger until the cache next cleans up, so expiry is checked
+            // on every hit as well.
+            if (cached != null && cached.getExpiresAt().isAfter(Instant.now())) {
+                timeSaved.increment(verification.mean(TimeUnit.SECONDS));
+                return Mono.just(cached);
+            }
+            var sample = Timer.start();
+            return delegate.decode(token)
+                    .doOnNext(jwt -> {
+                        sample.stop(verification);
+                        if (jwt.getExpiresAt() != null) {
+                            cache.put(key, jwt);
+                        }
+                    });
+        });
+    }
+
+    private static String digest(String token) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException("SHA-256 is not available", exception);
+        }
+    }
+
+    private static class UntilTokenExpiry implements Expiry<String, Jwt> {
+
+        @Override
+        public long expireAfterCreate(String key, Jwt jwt, long currentTime) {
+            return Math.max(0, Duration.between(Instant.now(), jwt.getExpiresAt()).toNanos());
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Jwt jwt, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, jwt, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, Jwt jwt, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -1,15 +1,95 @@
 package com.restaurant.orderservice.config;
 
+import java.net.SocketAddress;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToIntFunction;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.netty.channel.ChannelOption;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionPoolMetrics;
+import reactor.netty.resources.ConnectionProvider;
+
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
 
-@Configuration
+@Configuration(proxyBeanMethods = false)
 public class ClientConfig {
 
+    private static final String FOOD_SERVICE_POOL = "food-service";
+    private static final String ACQUIRE_STARTED = ClientConfig.class.getName() + ".ACQUIRE_STARTED";
+
+    @Bean(destroyMethod = "dispose")
+    ConnectionProvider foodServiceConnectionProvider(ClientProperties clientProperties, MeterRegistry meterRegistry) {
+        var httpClientProperties = clientProperties.foodHttpClient();
+        return ConnectionProvider.builder(FOOD_SERVICE_POOL)
+                .maxConnections(httpClientProperties.maxConnections())
+                .pendingAcquireMaxCount(httpClientProperties.pendingAcquireMaxCount())
+                .pendingAcquireTimeout(httpClientProperties.pendingAcquireTimeout())
+                .maxIdleTime(httpClientProperties.maxIdleTime())
+                .maxLifeTime(httpClientProperties.maxLifeTime())
+                .evictInBackground(httpClientProperties.evictInBackground())
+                .metrics(true, () -> (poolName, id, remoteAddress, metrics) ->
+                        registerPoolGauges(remoteAddress, metrics, meterRegistry))
+                .build();
+    }
 
     @Bean
-    WebClient webClient(ClientProperties clientProperties, WebClient.Builder webClientBuilder) {
-        return webClientBuilder.baseUrl(clientProperties.tastyServiceUri().toString()).build();
+    WebClient webClient(ClientProperties clientProperties, WebClient.Builder webClientBuilder,
+                        ConnectionProvider foodServiceConnectionProvider, MeterRegistry meterRegistry) {
+        var httpClientProperties = clientProperties.foodHttpClient();
+        var acquireTimer = Timer.builder("food.http.pool.acquire")
+                .description("Time from issuing a food service request until a connection is ready to send it")
+                .register(meterRegistry);
+        var httpClient = HttpClient.create(foodServiceConnectionProvider)
+                .keepAlive(httpClientProperties.keepAlive())
+                .responseTimeout(httpClientProperties.responseTimeout())
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) httpClientProperties.connectTimeout().toMillis())
+                .doOnRequest((request, connection) -> request.currentContextView()
+                        .<Long>getOrEmpty(ACQUIRE_STARTED)
+                        .ifPresent(startedAt -> acquireTimer.record(System.nanoTime() - startedAt,
+                                TimeUnit.NANOSECONDS)));
+        if (httpClientProperties.h2c()) {
+            // Prior-knowledge HTTP/2 over cleartext, multiplexing requests over fewer connections.
+            httpClient = httpClient.protocol(HttpProtocol.H2C);
+        }
+        return webClientBuilder
+                .baseUrl(clientProperties.tastyServiceUri().toString())
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .filter((request, next) -> next.exchange(request)
+                        .contextWrite(context -> context.put(ACQUIRE_STARTED, System.nanoTime())))
+                .build();
+    }
+
+    private static void registerPoolGauges(SocketAddress remoteAddress, ConnectionPoolMetrics metrics,
+                                           MeterRegistry meterRegistry) {
+        var remote = String.valueOf(remoteAddress);
+        registerPoolGauge("food.http.pool.active", "Connections currently leased to requests",
+                remote, metrics, ConnectionPoolMetrics::acquiredSize, meterRegistry);
+        registerPoolGauge("food.http.pool.idle", "Idle connections available in the pool",
+                remote, metrics, ConnectionPoolMetrics::idleSize, meterRegistry);
+        registerPoolGauge("food.http.pool.total", "Connections currently open",
+                remote, metrics, ConnectionPoolMetrics::allocatedSize, meterRegistry);
+        registerPoolGauge("food.http.pool.pending", "Requests waiting to acquire a connection",
+                remote, metrics, ConnectionPoolMetrics::pendingAcquireSize, meterRegistry);
+        registerPoolGauge("food.http.pool.max", "Maximum connections the pool may open",
+                remote, metrics, ConnectionPoolMetrics::maxAllocatedSize, meterRegistry);
+    }
+
+    private static void registerPoolGauge(String name, String description, String remoteAddress,
+                                          ConnectionPoolMetrics metrics,
+                                          ToIntFunction<ConnectionPoolMetrics> value,
+                                          MeterRegistry meterRegistry) {
+        Gauge.builder(name, metrics, poolMetrics -> value.applyAsInt(poolMetrics))
+                .description(description)
+                .tag("pool", FOOD_SERVICE_POOL)
+                .tag("remote.address", remoteAddress)
+                .strongReference(true)
+                .register(meterRegistry);
     }
 }
@@ -1,17 +1,97 @@
 package com.restaurant.orderservice.config;
 
 import java.net.URI;
+import java.time.Duration;
 
 import javax.validation.constraints.NotNull;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
 
 @ConfigurationProperties(prefix = "restaurant")
 public record ClientProperties(
 
         @NotNull
-        URI tastyServiceUri
+        URI tastyServiceUri,
+
+        @DefaultValue
+        FoodCache foodCache,
+
+        @DefaultValue
+        FoodBatch foodBatch,
+
+        @DefaultValue
+        FoodFallback foodFallback,
+
+        @DefaultValue
+        FoodHedge foodHedge,
+
+        @DefaultValue
+        FoodHttpClient foodHttpClient
 ) {
 
+    public record FoodCache(
+            @DefaultValue("1000")
+            long maximumSize,
+            @DefaultValue("10m")
+            Duration timeToLive,
+            @DefaultValue("1m")
+            Duration refreshAfter
+    ) {
+    }
+
+    public record FoodBatch(
+            @DefaultValue("false")
+            boolean enabled,
+            @DefaultValue("50")
+            int maxSize,
+            @DefaultValue("10ms")
+            Duration window,
+            @DefaultValue("1000")
+            int maxPending
+    ) {
+    }
+
+    public record FoodFallback(
+            @DefaultValue("true")
+            boolean serveStale,
+            @DefaultValue("1h")
+            Duration staleTimeToLive
+    ) {
+    }
+
+    public record FoodHedge(
+            @DefaultValue("false")
+            boolean enabled,
+            @DefaultValue("100ms")
+            Duration delay,
+            @DefaultValue("10")
+            int maxExtraLoadPercent
+    ) {
+    }
+
+    public record FoodHttpClient(
+            @DefaultValue("100")
+            int maxConnections,
+            @DefaultValue("1000")
+            int pendingAcquireMaxCount,
+            @DefaultValue("2s")
+            Duration pendingAcquireTimeout,
+            @DefaultValue("10s")
+            Duration maxIdleTime,
+            @DefaultValue("5m")
+            Duration maxLifeTime,
+            @DefaultValue("30s")
+            Duration evictInBackground,
+            @DefaultValue("true")
+            boolean keepAlive,
+            @DefaultValue("2s")
+            Duration connectTimeout,
+            @DefaultValue("3s")
+            Duration responseTimeout,
+            @DefaultValue("false")
+            boolean h2c
+    ) {
+    }
 
 }
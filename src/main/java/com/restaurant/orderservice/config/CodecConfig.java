@@ -0,0 +1,36 @@
+package com.restaurant.orderservice.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.http.codec.json.Jackson2SmileDecoder;
+import org.springframework.http.codec.json.Jackson2SmileEncoder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+
+// Smile, a binary encoding of JSON, for clients that ask for it. The default Smile codecs
+// come after the JSON ones, so JSON stays the format for everyone else; they are replaced
+// here to serialize with the same Jackson settings as the JSON responses.
+@Configuration(proxyBeanMethods = false)
+public class CodecConfig implements WebFluxConfigurer {
+
+    public static final String APPLICATION_SMILE_VALUE = "application/x-jackson-smile";
+    public static final MediaType APPLICATION_SMILE = MediaType.valueOf(APPLICATION_SMILE_VALUE);
+
+    private final ObjectMapper smileMapper;
+
+    public CodecConfig(Jackson2ObjectMapperBuilder jackson2ObjectMapperBuilder) {
+        this.smileMapper = new ObjectMapper(new SmileFactory());
+        jackson2ObjectMapperBuilder.configure(smileMapper);
+    }
+
+    @Override
+    public void configureHttpMessageCodecs(ServerCodecConfigurer configurer) {
+        // Without explicit mime types the Jackson codecs fall back to the JSON ones.
+        configurer.defaultCodecs().jackson2SmileEncoder(new Jackson2SmileEncoder(smileMapper, APPLICATION_SMILE));
+        configurer.defaultCodecs().jackson2SmileDecoder(new Jackson2SmileDecoder(smileMapper, APPLICATION_SMILE));
+    }
+}
@@ -1,23 +1,73 @@
 package com.restaurant.orderservice.config;
 
+import java.util.List;
+
+import com.restaurant.orderservice.domain.OrderStatus;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import reactor.core.publisher.Mono;
+
+import org.springframework.boot.LazyInitializationExcludeFilter;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.ReadingConverter;
+import org.springframework.data.convert.WritingConverter;
 import org.springframework.data.domain.ReactiveAuditorAware;
 import org.springframework.data.r2dbc.config.EnableR2dbcAuditing;
+import org.springframework.data.r2dbc.convert.R2dbcCustomConversions;
+import org.springframework.data.r2dbc.dialect.PostgresDialect;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.ReactiveSecurityContextHolder;
 import org.springframework.security.core.context.SecurityContext;
 
-@Configuration
+@Configuration(proxyBeanMethods = false)
 @EnableR2dbcAuditing
 public class DataConfig {
 
     @Bean
-    ReactiveAuditorAware<String> auditorAware() {
-        return () -> ReactiveSecurityContextHolder.getContext()
-                .map(SecurityContext::getAuthentication)
-                .filter(Authentication::isAuthenticated)
-                .map(Authentication::getName);
+    ReactiveAuditorAware<String> auditorAware(MeterRegistry meterRegistry) {
+        var auditorLookup = Timer.builder("data.auditor.lookup")
+                .description("Time taken to resolve the auditor of an audited entity")
+                .register(meterRegistry);
+        return () -> Mono.defer(() -> {
+            var sample = Timer.start();
+            return ReactiveSecurityContextHolder.getContext()
+                    .map(SecurityContext::getAuthentication)
+                    .filter(Authentication::isAuthenticated)
+                    .map(Authentication::getName)
+                    .doOnTerminate(() -> sample.stop(auditorLookup));
+        });
     }
 
+    @Bean
+    R2dbcCustomConversions r2dbcCustomConversions() {
+        return R2dbcCustomConversions.of(PostgresDialect.INSTANCE,
+                List.of(new OrderStatusWritingConverter(), new OrderStatusReadingConverter()));
+    }
+
+    // With lazy initialization the schema migration would wait for something to ask for it,
+    // which with R2DBC never happens.
+    @Bean
+    static LazyInitializationExcludeFilter flywayInitializerExcludeFilter() {
+        return (beanName, beanDefinition, beanType) -> "flywayInitializer".equals(beanName);
+    }
+
+    @WritingConverter
+    static class OrderStatusWritingConverter implements Converter<OrderStatus, Short> {
+
+        @Override
+        public Short convert(OrderStatus status) {
+            return status.code();
+        }
+    }
+
+    @ReadingConverter
+    static class OrderStatusReadingConverter implements Converter<Short, OrderStatus> {
+
+        @Override
+        public OrderStatus convert(Short code) {
+            return OrderStatus.fromCode(code);
+        }
+    }
 }
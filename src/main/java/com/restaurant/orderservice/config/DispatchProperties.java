@@ -0,0 +1,29 @@
+package com.restaurant.orderservice.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties(prefix = "restaurant.dispatch")
+public record DispatchProperties(
+
+        @DefaultValue("100")
+        int batchSize,
+
+        @DefaultValue("50ms")
+        Duration maxLatency,
+
+        @DefaultValue("4")
+        int concurrency,
+
+        @DefaultValue("256")
+        int prefetch,
+
+        @DefaultValue("3")
+        int maxRetries,
+
+        @DefaultValue("100ms")
+        Duration retryBackoff
+) {
+}
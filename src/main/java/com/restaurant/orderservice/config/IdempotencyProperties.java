@@ -0,0 +1,29 @@
+package com.restaurant.orderservice.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties(prefix = "restaurant.idempotency")
+public record IdempotencyProperties(
+
+        @DefaultValue("10000")
+        long cacheSize,
+
+        @DefaultValue("10m")
+        Duration cacheTtl,
+
+        @DefaultValue("10s")
+        Duration inFlightTimeout,
+
+        @DefaultValue("100ms")
+        Duration pollInterval,
+
+        @DefaultValue("24h")
+        Duration retention,
+
+        @DefaultValue("1h")
+        Duration sweepInterval
+) {
+}
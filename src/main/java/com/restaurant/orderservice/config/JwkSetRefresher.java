@@ -0,0 +1,161 @@
+package com.restaurant.orderservice.config;
+
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.annotation.PreDestroy;
+
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jwt.SignedJWT;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.util.StringUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriComponentsBuilder;
+
+// Keeps the issuer's JSON Web Key Set in memory and refreshes it in the background, so a
+// rotated key is usually known before the first token signed with it arrives. A token whose
+// key is still unknown joins a single shared refresh, at most once per min-refresh-interval,
+// instead of each request fetching the set. Without a JWK set or issuer URI it does nothing.
+public class JwkSetRefresher {
+
+    private static final Logger log = LoggerFactory.getLogger(JwkSetRefresher.class);
+
+    private final WebClient webClient;
+    private final String issuerUri;
+    private final JwtCacheProperties jwtCacheProperties;
+    private final AtomicReference<JWKSet> jwkSet = new AtomicReference<>(new JWKSet());
+    private final AtomicReference<Mono<JWKSet>> inFlight = new AtomicReference<>();
+    private final AtomicLong lastRefreshStarted = new AtomicLong();
+    private volatile boolean refreshStarted;
+    private final Counter refreshes;
+    private final Counter refreshFailures;
+    private volatile String jwkSetUri;
+    private Disposable refresher;
+
+    public JwkSetRefresher(WebClient webClient, String jwkSetUri, String issuerUri,
+                           JwtCacheProperties jwtCacheProperties, MeterRegistry meterRegistry) {
+        this.webClient = webClient;
+        this.jwkSetUri = StringUtils.hasText(jwkSetUri) ? jwkSetUri : null;
+        this.issuerUri = StringUtils.hasText(issuerUri) ? issuerUri : null;
+        this.jwtCacheProperties = jwtCacheProperties;
+        this.refreshes = Counter.builder("security.jwks.refresh")
+                .description("Fetches of the issuer's JSON Web Key Set, by outcome")
+                .tag("outcome", "success")
+                .register(meterRegistry);
+        this.refreshFailures = Counter.builder("security.jwks.refresh")
+                .description("Fetches of the issuer's JSON Web Key Set, by outcome")
+                .tag("outcome", "failure")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (jwkSetUri == null && issuerUri == null) {
+            return;
+        }
+        refresher = Flux.interval(Duration.ZERO, jwtCacheProperties.jwksRefreshInterval())
+                .onBackpressureDrop()
+                .concatMap(tick -> refresh()
+                        .onErrorResume(exception -> {
+                            log.warn("Failed to refresh the JSON Web Key Set, keeping the current keys", exception);
+                            return Mono.empty();
+                        }), 1)
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (refresher != null) {
+            refresher.dispose();
+        }
+    }
+
+    public Flux<JWK> keysFor(SignedJWT jwt) {
+        var selector = new JWKSelector(JWKMatcher.forJWSHeader(jwt.getHeader()));
+        var keys = selector.select(jwkSet.get());
+        if (!keys.isEmpty()) {
+            return Flux.fromIterable(keys);
+        }
+        // Throttled even while no keys are known, or tokens with made-up key ids would make
+        // every request fetch the set.
+        var sinceLastRefresh = System.nanoTime() - lastRefreshStarted.get();
+        if (refreshStarted && inFlight.get() == null
+                && sinceLastRefresh < jwtCacheProperties.jwksMinRefreshInterval().toNanos()) {
+            return Flux.empty();
+        }
+        return refresh().flatMapIterable(selector::select);
+    }
+
+    Mono<JWKSet> refresh() {
+        return Mono.defer(() -> {
+            var current = inFlight.get();
+            if (current != null) {
+                return current;
+            }
+            var refresh = fetch()
+                    .doOnSubscribe(subscription -> {
+                        lastRefreshStarted.set(System.nanoTime());
+                        refreshStarted = true;
+                    })
+                    .doOnNext(keys -> {
+                        jwkSet.set(keys);
+                        refreshes.increment();
+                    })
+                    .doOnError(exception -> refreshFailures.increment())
+                    .doFinally(signal -> inFlight.set(null))
+                    .cache();
+            return inFlight.compareAndSet(null, refresh) ? refresh : refresh();
+        });
+    }
+
+    private Mono<JWKSet> fetch() {
+        return resolveJwkSetUri()
+                .flatMap(uri -> webClient.get().uri(uri).retrieve().bodyToMono(String.class))
+                .map(JwkSetRefresher::parse)
+                .timeout(jwtCacheProperties.jwksTimeout());
+    }
+
+    private Mono<String> resolveJwkSetUri() {
+        if (jwkSetUri != null) {
+            return Mono.just(jwkSetUri);
+        }
+        if (issuerUri == null) {
+            return Mono.error(new IllegalStateException("Neither a JWK set URI nor an issuer URI is configured"));
+        }
+        var configurationUri = UriComponentsBuilder.fromUriString(issuerUri)
+                .path("/.well-known/openid-configuration")
+                .toUriString();
+        return webClient.get().uri(configurationUri)
+                .retrieve()
+                .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {
+                })
+                .flatMap(configuration -> Mono.justOrEmpty((String) configuration.get("jwks_uri")))
+                .switchIfEmpty(Mono.error(() -> new IllegalStateException(
+                        "The issuer " + issuerUri + " does not advertise a jwks_uri")))
+                .doOnNext(uri -> jwkSetUri = uri);
+    }
+
+    private static JWKSet parse(String body) {
+        try {
+            return JWKSet.parse(body);
+        } catch (ParseException exception) {
+            throw new IllegalStateException("The JSON Web Key Set is not valid", exception);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.restaurant.orderservice.config;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.security.oauth2.resource.OAuth2ResourceServerProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.converter.RsaKeyConverters;
+import org.springframework.security.oauth2.core.DelegatingOAuth2TokenValidator;
+import org.springframework.security.oauth2.core.OAuth2TokenValidator;
+import org.springframework.security.oauth2.jose.jws.SignatureAlgorithm;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtClaimNames;
+import org.springframework.security.oauth2.jwt.JwtClaimValidator;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusReactiveJwtDecoder;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import org.springframework.util.StringUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+
+// Replaces the auto-configured JWT decoder with one built from the same properties, verifying
+// against keys kept fresh by JwkSetRefresher and caching the verified tokens. As with the
+// auto-configured one, a JWK set URI takes precedence over a public key, and a public key
+// over the issuer's advertised keys.
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "restaurant.jwt-cache.enabled", havingValue = "true")
+public class JwtCacheConfig {
+
+    @Bean
+    JwkSetRefresher jwkSetRefresher(OAuth2ResourceServerProperties resourceServerProperties,
+                                    JwtCacheProperties jwtCacheProperties, WebClient.Builder webClientBuilder,
+                                    MeterRegistry meterRegistry) {
+        var jwtProperties = resourceServerProperties.getJwt();
+        if (usesPublicKey(jwtProperties)) {
+            return new JwkSetRefresher(webClientBuilder.build(), null, null, jwtCacheProperties, meterRegistry);
+        }
+        return new JwkSetRefresher(webClientBuilder.build(), jwtProperties.getJwkSetUri(),
+                jwtProperties.getIssuerUri(), jwtCacheProperties, meterRegistry);
+    }
+
+    @Bean
+    ReactiveJwtDecoder jwtDecoder(OAuth2ResourceServerProperties resourceServerProperties,
+                                  JwkSetRefresher jwkSetRefresher, JwtCacheProperties jwtCacheProperties,
+                                  MeterRegistry meterRegistry) throws IOException {
+        var jwtProperties = resourceServerProperties.getJwt();
+        NimbusReactiveJwtDecoder verifier;
+        if (usesPublicKey(jwtProperties)) {
+            var publicKey = RsaKeyConverters.x509().convert(jwtProperties.getPublicKeyLocation().getInputStream());
+            verifier = NimbusReactiveJwtDecoder.withPublicKey(publicKey)
+                    .signatureAlgorithm(SignatureAlgorithm.from(jwtProperties.getJwsAlgorithms().get(0)))
+                    .build();
+        } else {
+            var builder = NimbusReactiveJwtDecoder.withJwkSource(jwkSetRefresher::keysFor);
+            jwtProperties.getJwsAlgorithms().forEach(algorithm -> builder.jwsAlgorithm(SignatureAlgorithm.from(algorithm)));
+            verifier = builder.build();
+        }
+        verifier.setJwtValidator(validator(jwtProperties));
+        return new CachingJwtDecoder(verifier, jwtCacheProperties, meterRegistry);
+    }
+
+    private static boolean usesPublicKey(OAuth2ResourceServerProperties.Jwt jwtProperties) {
+        return !StringUtils.hasText(jwtProperties.getJwkSetUri()) && jwtProperties.getPublicKeyLocation() != null;
+    }
+
+    private static OAuth2TokenValidator<Jwt> validator(OAuth2ResourceServerProperties.Jwt jwtProperties) {
+        var issuerUri = jwtProperties.getIssuerUri();
+        List<OAuth2TokenValidator<Jwt>> validators = new ArrayList<>();
+        validators.add(StringUtils.hasText(issuerUri)
+                ? JwtValidators.createDefaultWithIssuer(issuerUri)
+                : JwtValidators.createDefault());
+        var audiences = jwtProperties.getAudiences();
+        if (!audiences.isEmpty()) {
+            validators.add(new JwtClaimValidator<List<String>>(JwtClaimNames.AUD,
+                    audience -> audience != null && !Collections.disjoint(audience, audiences)));
+        }
+        return new DelegatingOAuth2TokenValidator<>(validators);
+    }
+}
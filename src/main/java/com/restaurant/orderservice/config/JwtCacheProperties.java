@@ -0,0 +1,26 @@
+package com.restaurant.orderservice.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties(prefix = "restaurant.jwt-cache")
+public record JwtCacheProperties(
+
+        @DefaultValue("false")
+        boolean enabled,
+
+        @DefaultValue("10000")
+        int maximumSize,
+
+        @DefaultValue("5m")
+        Duration jwksRefreshInterval,
+
+        @DefaultValue("30s")
+        Duration jwksMinRefreshInterval,
+
+        @DefaultValue("3s")
+        Duration jwksTimeout
+) {
+}
@@ -0,0 +1,29 @@
+package com.restaurant.orderservice.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties(prefix = "restaurant.order-archive")
+public record OrderArchiveProperties(
+
+        @DefaultValue("false")
+        boolean enabled,
+
+        @DefaultValue("1h")
+        Duration interval,
+
+        @DefaultValue("180d")
+        Duration archiveAfter,
+
+        @DefaultValue("500")
+        int batchSize,
+
+        @DefaultValue("200ms")
+        Duration batchPause,
+
+        @DefaultValue("3")
+        int partitionsAhead
+) {
+}
@@ -0,0 +1,17 @@
+package com.restaurant.orderservice.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties(prefix = "restaurant.order-events")
+public record OrderEventsProperties(
+
+        @DefaultValue("32")
+        int subscriberBufferSize,
+
+        @DefaultValue("15s")
+        Duration heartbeatInterval
+) {
+}
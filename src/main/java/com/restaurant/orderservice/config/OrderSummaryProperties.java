@@ -0,0 +1,15 @@
+package com.restaurant.orderservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties(prefix = "restaurant.order-summary")
+public record OrderSummaryProperties(
+
+        @DefaultValue("500")
+        int rebuildChunkSize,
+
+        @DefaultValue("false")
+        boolean rebuildOnStartup
+) {
+}
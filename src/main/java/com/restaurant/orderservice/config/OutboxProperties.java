@@ -0,0 +1,46 @@
+package com.restaurant.orderservice.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties(prefix = "restaurant.outbox")
+public record OutboxProperties(
+
+        @DefaultValue("500ms")
+        Duration pollInterval,
+
+        @DefaultValue("100")
+        int batchSize,
+
+        @DefaultValue("true")
+        boolean publisherConfirms,
+
+        @DefaultValue("5s")
+        Duration confirmTimeout,
+
+        @DefaultValue("true")
+        boolean publishOnCommit,
+
+        @DefaultValue("false")
+        boolean awaitConfirm,
+
+        @DefaultValue("10s")
+        Duration relayMinAge,
+
+        @DefaultValue("1000")
+        int bufferCapacity,
+
+        @DefaultValue("backpressure")
+        BufferOverflow bufferOverflow,
+
+        @DefaultValue("1s")
+        Duration bufferOfferTimeout
+) {
+
+    public enum BufferOverflow {
+        BACKPRESSURE,
+        REJECT
+    }
+}
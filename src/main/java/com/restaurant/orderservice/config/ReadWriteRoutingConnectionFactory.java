@@ -0,0 +1,81 @@
+package com.restaurant.orderservice.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.ContextView;
+
+// Hands out replica connections to pipelines marked read-only and primary connections to
+// everything else. A read-only pipeline still gets a primary connection while the replica
+// lags or is down, and when a replica connection cannot be created.
+public class ReadWriteRoutingConnectionFactory implements ConnectionFactory {
+
+    private static final Logger log = LoggerFactory.getLogger(ReadWriteRoutingConnectionFactory.class);
+    private static final String READ_ONLY = ReadWriteRoutingConnectionFactory.class.getName() + ".READ_ONLY";
+
+    private final ConnectionFactory primary;
+    private final ConnectionFactory replica;
+    private final ReplicaMonitor replicaMonitor;
+    private final Counter unavailableFallbacks;
+    private final Counter errorFallbacks;
+
+    public ReadWriteRoutingConnectionFactory(ConnectionFactory primary, ConnectionFactory replica,
+                                             ReplicaMonitor replicaMonitor, MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.replica = replica;
+        this.replicaMonitor = replicaMonitor;
+        this.unavailableFallbacks = fallbackCounter("unavailable", meterRegistry);
+        this.errorFallbacks = fallbackCounter("error", meterRegistry);
+    }
+
+    // Replicas replay asynchronously, so only mark queries that tolerate reading slightly stale data.
+    public static <T> Flux<T> readOnly(Flux<T> query) {
+        return query.contextWrite(context -> context.put(READ_ONLY, true));
+    }
+
+    public static <T> Mono<T> readOnly(Mono<T> query) {
+        return query.contextWrite(context -> context.put(READ_ONLY, true));
+    }
+
+    public static boolean isReadOnly(ContextView context) {
+        return context.getOrDefault(READ_ONLY, false);
+    }
+
+    @Override
+    public Mono<Connection> create() {
+        return Mono.deferContextual(context -> {
+            if (!isReadOnly(context)) {
+                return Mono.from(primary.create());
+            }
+            if (!replicaMonitor.isAvailable()) {
+                unavailableFallbacks.increment();
+                return Mono.from(primary.create());
+            }
+            return Mono.<Connection>from(replica.create())
+                    .onErrorResume(exception -> {
+                        log.warn("Failed to get a replica connection, falling back to the primary", exception);
+                        replicaMonitor.markUnavailable(exception);
+                        errorFallbacks.increment();
+                        return Mono.from(primary.create());
+                    });
+        });
+    }
+
+    @Override
+    public ConnectionFactoryMetadata getMetadata() {
+        return primary.getMetadata();
+    }
+
+    private static Counter fallbackCounter(String reason, MeterRegistry meterRegistry) {
+        return Counter.builder("r2dbc.replica.fallback")
+                .description("Read-only connections taken from the primary instead of the replica")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+}
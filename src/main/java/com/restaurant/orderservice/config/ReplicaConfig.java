@@ -0,0 +1,79 @@
+package com.restaurant.orderservice.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactory;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcProperties;
+import org.springframework.boot.r2dbc.ConnectionFactoryBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+// Replaces the auto-configured pool with a primary and a replica pool behind a routing
+// connection factory. Pool metrics and health are reported per pool, tagged by bean name.
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "restaurant.replica.enabled", havingValue = "true")
+public class ReplicaConfig {
+
+    @Bean(destroyMethod = "dispose")
+    ConnectionPool primaryConnectionFactory(R2dbcProperties r2dbcProperties) {
+        var pool = r2dbcProperties.getPool();
+        var connectionFactory = ConnectionFactoryBuilder.withUrl(r2dbcProperties.getUrl())
+                .username(r2dbcProperties.getUsername())
+                .password(r2dbcProperties.getPassword())
+                .build();
+        var configuration = ConnectionPoolConfiguration.builder(connectionFactory)
+                .name("primary")
+                .initialSize(pool.getInitialSize())
+                .maxSize(pool.getMaxSize())
+                .maxIdleTime(pool.getMaxIdleTime())
+                .maxAcquireTime(pool.getMaxAcquireTime())
+                .maxCreateConnectionTime(pool.getMaxCreateConnectionTime())
+                .validationDepth(pool.getValidationDepth());
+        if (pool.getMaxLifeTime() != null) {
+            configuration.maxLifeTime(pool.getMaxLifeTime());
+        }
+        if (pool.getValidationQuery() != null) {
+            configuration.validationQuery(pool.getValidationQuery());
+        }
+        return new ConnectionPool(configuration.build());
+    }
+
+    @Bean(destroyMethod = "dispose")
+    ConnectionPool replicaConnectionFactory(ReplicaProperties replicaProperties, R2dbcProperties r2dbcProperties) {
+        var pool = r2dbcProperties.getPool();
+        var connectionFactory = ConnectionFactoryBuilder.withUrl(replicaProperties.url())
+                .username(replicaProperties.username() != null
+                        ? replicaProperties.username() : r2dbcProperties.getUsername())
+                .password(replicaProperties.password() != null
+                        ? replicaProperties.password() : r2dbcProperties.getPassword())
+                .build();
+        return new ConnectionPool(ConnectionPoolConfiguration.builder(connectionFactory)
+                .name("replica")
+                .initialSize(replicaProperties.initialSize())
+                .maxSize(replicaProperties.maxSize())
+                .maxIdleTime(pool.getMaxIdleTime())
+                .maxAcquireTime(pool.getMaxAcquireTime())
+                .maxCreateConnectionTime(pool.getMaxCreateConnectionTime())
+                .build());
+    }
+
+    @Bean
+    ReplicaMonitor replicaMonitor(@Qualifier("replicaConnectionFactory") ConnectionFactory replicaConnectionFactory,
+                                  ReplicaProperties replicaProperties, MeterRegistry meterRegistry) {
+        return new ReplicaMonitor(replicaConnectionFactory, replicaProperties, meterRegistry);
+    }
+
+    @Bean
+    @Primary
+    ConnectionFactory connectionFactory(@Qualifier("primaryConnectionFactory") ConnectionFactory primaryConnectionFactory,
+                                        @Qualifier("replicaConnectionFactory") ConnectionFactory replicaConnectionFactory,
+                                        ReplicaMonitor replicaMonitor, MeterRegistry meterRegistry) {
+        return new ReadWriteRoutingConnectionFactory(primaryConnectionFactory, replicaConnectionFactory,
+                replicaMonitor, meterRegistry);
+    }
+}
@@ -0,0 +1,105 @@
+package com.restaurant.orderservice.config;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PreDestroy;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.r2dbc.spi.ConnectionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+// Polls the replica for its replay lag and marks it unavailable while it lags more than
+// max-lag or cannot be reached, so read-only queries fall back to the primary.
+// The replica starts unavailable until the first successful check.
+public class ReplicaMonitor {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaMonitor.class);
+
+    // Zero when the replica has replayed everything it received, or is not in recovery at all.
+    private static final String REPLAY_LAG = """
+            SELECT CASE
+                       WHEN NOT pg_is_in_recovery() OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+                       ELSE coalesce(extract(epoch FROM now() - pg_last_xact_replay_timestamp()), 0)
+                   END * 1000 AS lag_millis
+            """;
+
+    private final DatabaseClient replicaClient;
+    private final ReplicaProperties replicaProperties;
+    private final AtomicLong lagMillis = new AtomicLong(-1);
+    private volatile boolean available;
+    private Disposable monitor;
+
+    public ReplicaMonitor(ConnectionFactory replicaConnectionFactory, ReplicaProperties replicaProperties,
+                          MeterRegistry meterRegistry) {
+        this.replicaClient = DatabaseClient.create(replicaConnectionFactory);
+        this.replicaProperties = replicaProperties;
+        Gauge.builder("r2dbc.replica.available", this, monitor -> monitor.available ? 1 : 0)
+                .description("Whether read-only queries are routed to the replica")
+                .register(meterRegistry);
+        TimeGauge.builder("r2dbc.replica.lag", lagMillis, TimeUnit.MILLISECONDS, AtomicLong::get)
+                .description("Replay lag of the replica at the last check, negative when it could not be checked")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        monitor = Flux.interval(Duration.ZERO, replicaProperties.checkInterval())
+                .onBackpressureDrop()
+                .concatMap(tick -> check(), 1)
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (monitor != null) {
+            monitor.dispose();
+        }
+    }
+
+    public boolean isAvailable() {
+        return available;
+    }
+
+    public Mono<Boolean> check() {
+        return replicaClient.sql(REPLAY_LAG)
+                .map(row -> row.get("lag_millis", Number.class).longValue())
+                .one()
+                .timeout(replicaProperties.checkInterval())
+                .map(lag -> recordLag(Duration.ofMillis(lag)))
+                .onErrorResume(exception -> {
+                    markUnavailable(exception);
+                    return Mono.just(false);
+                });
+    }
+
+    void markUnavailable(Throwable cause) {
+        lagMillis.set(-1);
+        if (available) {
+            log.warn("Replica unavailable, routing read-only queries to the primary", cause);
+        }
+        available = false;
+    }
+
+    boolean recordLag(Duration lag) {
+        lagMillis.set(lag.toMillis());
+        var withinMaxLag = lag.compareTo(replicaProperties.maxLag()) <= 0;
+        if (available != withinMaxLag) {
+            log.info("Replica lag is {}, routing read-only queries to the {}",
+                    lag, withinMaxLag ? "replica" : "primary");
+        }
+        available = withinMaxLag;
+        return withinMaxLag;
+    }
+}
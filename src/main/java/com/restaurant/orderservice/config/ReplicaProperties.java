@@ -0,0 +1,32 @@
+package com.restaurant.orderservice.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties(prefix = "restaurant.replica")
+public record ReplicaProperties(
+
+        @DefaultValue("false")
+        boolean enabled,
+
+        String url,
+
+        String username,
+
+        String password,
+
+        @DefaultValue("2")
+        int initialSize,
+
+        @DefaultValue("10")
+        int maxSize,
+
+        @DefaultValue("5s")
+        Duration maxLag,
+
+        @DefaultValue("2s")
+        Duration checkInterval
+) {
+}
@@ -0,0 +1,37 @@
+package com.restaurant.orderservice.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.LifecycleProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.support.AbstractApplicationContext;
+import org.springframework.context.support.DefaultLifecycleProcessor;
+
+// Training run for a class data sharing archive. With spring.context.exit=onRefresh, the
+// property later Spring versions use for the same purpose, the application creates every
+// bean and then exits, before the web server, the binders or any background work start.
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "spring.context.exit", havingValue = "onRefresh")
+public class TrainingRunConfig {
+
+    @Bean(AbstractApplicationContext.LIFECYCLE_PROCESSOR_BEAN_NAME)
+    LifecycleProcessor lifecycleProcessor() {
+        return new ExitOnRefreshLifecycleProcessor();
+    }
+
+    static class ExitOnRefreshLifecycleProcessor extends DefaultLifecycleProcessor {
+
+        private static final Logger log = LoggerFactory.getLogger(ExitOnRefreshLifecycleProcessor.class);
+
+        @Override
+        public void onRefresh() {
+            log.info("Application context refreshed, ending the training run");
+            // Halting still writes the archive but skips the shutdown hook, which would wait
+            // on the refresh this is called from.
+            Runtime.getRuntime().halt(0);
+        }
+    }
+}
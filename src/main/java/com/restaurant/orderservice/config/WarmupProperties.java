@@ -0,0 +1,29 @@
+package com.restaurant.orderservice.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties(prefix = "restaurant.warmup")
+public record WarmupProperties(
+
+        @DefaultValue("true")
+        boolean enabled,
+
+        @DefaultValue("30s")
+        Duration budget,
+
+        @DefaultValue("10")
+        int foodConnections,
+
+        @DefaultValue("5000")
+        int iterations,
+
+        @DefaultValue("50")
+        int databaseIterations,
+
+        @DefaultValue("8")
+        int concurrency
+) {
+}
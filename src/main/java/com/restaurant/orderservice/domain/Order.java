@@ -6,7 +6,7 @@ import org.springframework.data.relational.core.mapping.Table;
 
 import java.time.Instant;
 
-@Table(name = "orders")
+@Table(name = "order_details")
 public record Order(
         @Id
         Long id,
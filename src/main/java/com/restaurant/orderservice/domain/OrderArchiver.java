@@ -0,0 +1,162 @@
+package com.restaurant.orderservice.domain;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import javax.annotation.PreDestroy;
+
+import com.restaurant.orderservice.config.OrderArchiveProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+
+// Keeps monthly partitions of orders ahead of time and, when archival is enabled, moves
+// orders older than archive-after into orders_archive, as documents with the food and
+// status spelled out. Archived orders still count towards /orders/summary, but are no
+// longer returned by GET /orders or its pages. Each batch is a single statement on a
+// bounded number of rows, with a pause in between, so archival never holds many locks or
+// connections.
+@Component
+public class OrderArchiver {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderArchiver.class);
+
+    private static final String ARCHIVE_BATCH = """
+            WITH archived AS (
+                DELETE FROM orders
+                WHERE (id, created_date) IN (SELECT id, created_date FROM orders
+                                             WHERE created_date < :archiveBefore
+                                             LIMIT :limit
+                                             FOR UPDATE SKIP LOCKED)
+                RETURNING *
+            ), archived_details AS (
+                SELECT archived.id, food_ref, food_snapshot.food_description, food_snapshot.price AS food_price,
+                       quantity, order_status_name(status) AS status, created_date, last_modified_date, version,
+                       created_by, last_modified_by
+                FROM archived
+                LEFT JOIN food_snapshot ON food_snapshot.id = archived.food_snapshot_id
+            )
+            INSERT INTO orders_archive (created_by, period_start, order_count, accepted_count, dispatched_count,
+                                        total_spend, last_order_date, orders, archived_date)
+            SELECT created_by,
+                   date_trunc('month', created_date),
+                   count(*),
+                   count(*) FILTER (WHERE status = 'ACCEPTED'),
+                   count(*) FILTER (WHERE status = 'DISPATCHED'),
+                   coalesce(sum((food_price * quantity)::numeric(16, 2)), 0),
+                   max(created_date),
+                   jsonb_agg(to_jsonb(archived_details) ORDER BY created_date, id),
+                   now()
+            FROM archived_details
+            GROUP BY created_by, date_trunc('month', created_date)
+            RETURNING order_count
+            """;
+
+    private final DatabaseClient databaseClient;
+    private final OrderArchiveProperties archiveProperties;
+    private final Counter archivedCounter;
+    private final Timer batchTimer;
+    private Disposable archiver;
+
+    public OrderArchiver(DatabaseClient databaseClient, OrderArchiveProperties archiveProperties,
+                         MeterRegistry meterRegistry) {
+        this.databaseClient = databaseClient;
+        this.archiveProperties = archiveProperties;
+        this.archivedCounter = Counter.builder("order.archive.archived")
+                .description("Orders moved to the archive")
+                .register(meterRegistry);
+        this.batchTimer = Timer.builder("order.archive.batch")
+                .description("Time taken to archive a batch of orders")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        archiver = Flux.interval(Duration.ZERO, archiveProperties.interval())
+                .onBackpressureDrop()
+                .concatMap(tick -> maintain()
+                        .onErrorResume(exception -> {
+                            log.warn("Failed to maintain orders partitions and archive", exception);
+                            return Mono.empty();
+                        }), 1)
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (archiver != null) {
+            archiver.dispose();
+        }
+    }
+
+    public Mono<Void> maintain() {
+        if (!archiveProperties.enabled()) {
+            return createPartitions().then();
+        }
+        return createPartitions()
+                .then(archive())
+                .then(dropArchivedPartitions())
+                .then();
+    }
+
+    public Mono<Integer> createPartitions() {
+        return databaseClient.sql("SELECT create_orders_partitions(date_trunc('month', now())::timestamp, :months)")
+                .bind("months", archiveProperties.partitionsAhead() + 1)
+                .map(row -> row.get(0, Integer.class))
+                .one()
+                .doOnNext(created -> {
+                    if (created > 0) {
+                        log.info("Created {} orders partitions", created);
+                    }
+                });
+    }
+
+    public Mono<Long> archive() {
+        return Mono.defer(() -> {
+            var archiveBefore = Instant.now().minus(archiveProperties.archiveAfter());
+            return archiveBatch(archiveBefore)
+                    .expand(archived -> archived == archiveProperties.batchSize()
+                            ? archiveBatch(archiveBefore).delaySubscription(archiveProperties.batchPause())
+                            : Mono.empty())
+                    .reduce(0L, Long::sum);
+        });
+    }
+
+    public Mono<Integer> dropArchivedPartitions() {
+        return Mono.defer(() -> databaseClient.sql("SELECT drop_archived_orders_partitions(CAST(:archiveBefore AS timestamp))")
+                        .bind("archiveBefore", Instant.now().minus(archiveProperties.archiveAfter()))
+                        .map(row -> row.get(0, Integer.class))
+                        .one())
+                .doOnNext(dropped -> {
+                    if (dropped > 0) {
+                        log.info("Dropped {} archived orders partitions", dropped);
+                    }
+                });
+    }
+
+    private Mono<Integer> archiveBatch(Instant archiveBefore) {
+        return Mono.defer(() -> {
+            var sample = Timer.start();
+            return databaseClient.sql(ARCHIVE_BATCH)
+                    .bind("archiveBefore", archiveBefore)
+                    .bind("limit", archiveProperties.batchSize())
+                    .map(row -> row.get(0, Integer.class))
+                    .all()
+                    .reduce(0, Integer::sum)
+                    .doOnNext(archived -> {
+                        sample.stop(batchTimer);
+                        archivedCounter.increment(archived);
+                    });
+        });
+    }
+}
@@ -0,0 +1,10 @@
+package com.restaurant.orderservice.domain;
+
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+public interface OrderBatchRepository {
+
+    Flux<Order> insertAll(List<Order> orders);
+}
@@ -0,0 +1,69 @@
+package com.restaurant.orderservice.domain;
+
+import org.springframework.data.domain.ReactiveAuditorAware;
+import org.springframework.data.r2dbc.convert.R2dbcConverter;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+class OrderBatchRepositoryImpl implements OrderBatchRepository {
+
+    private static final String INSERT_ORDERS = """
+            INSERT INTO order_details (food_ref, food_description, food_price, quantity, status,
+                                       created_date, last_modified_date, created_by, last_modified_by, version)
+            VALUES %s
+            RETURNING *
+            """;
+    private static final String ORDER_VALUES =
+            "(:foodRef%1$d, :foodDescription%1$d, :foodPrice%1$d, :quantity%1$d, :status%1$d, :now, :now, :auditor, :auditor, 1)";
+
+    private final DatabaseClient databaseClient;
+    private final R2dbcConverter r2dbcConverter;
+    private final ReactiveAuditorAware<String> auditorAware;
+
+    OrderBatchRepositoryImpl(DatabaseClient databaseClient, R2dbcConverter r2dbcConverter,
+                             ReactiveAuditorAware<String> auditorAware) {
+        this.databaseClient = databaseClient;
+        this.r2dbcConverter = r2dbcConverter;
+        this.auditorAware = auditorAware;
+    }
+
+    @Override
+    public Flux<Order> insertAll(List<Order> orders) {
+        if (orders.isEmpty()) {
+            return Flux.empty();
+        }
+        return auditorAware.getCurrentAuditor()
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMapMany(auditor -> insertAll(orders, auditor.orElse(null), Instant.now()));
+    }
+
+    private Flux<Order> insertAll(List<Order> orders, String auditor, Instant now) {
+        var values = IntStream.range(0, orders.size())
+                .mapToObj(ORDER_VALUES::formatted)
+                .collect(Collectors.joining(", "));
+        var spec = databaseClient.sql(INSERT_ORDERS.formatted(values))
+                .bind("now", now);
+        spec = auditor != null ? spec.bind("auditor", auditor) : spec.bindNull("auditor", String.class);
+        for (int i = 0; i < orders.size(); i++) {
+            var order = orders.get(i);
+            spec = spec.bind("foodRef" + i, order.foodRef())
+                    .bind("quantity" + i, order.quantity())
+                    .bind("status" + i, order.status().code());
+            spec = order.foodDescription() != null
+                    ? spec.bind("foodDescription" + i, order.foodDescription())
+                    : spec.bindNull("foodDescription" + i, String.class);
+            spec = order.foodPrice() != null
+                    ? spec.bind("foodPrice" + i, order.foodPrice())
+                    : spec.bindNull("foodPrice" + i, Double.class);
+        }
+        return spec.map((row, metadata) -> r2dbcConverter.read(Order.class, row, metadata))
+                .all();
+    }
+}
@@ -0,0 +1,31 @@
+package com.restaurant.orderservice.domain;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+
+public record OrderCursor(
+        Instant createdDate,
+        Long id
+) {
+
+    public static OrderCursor of(Order order) {
+        return new OrderCursor(order.createdDate(), order.id());
+    }
+
+    public static OrderCursor decode(String token) {
+        try {
+            var value = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            var separator = value.lastIndexOf('_');
+            return new OrderCursor(Instant.parse(value.substring(0, separator)),
+                    Long.valueOf(value.substring(separator + 1)));
+        } catch (RuntimeException exception) {
+            throw new IllegalArgumentException("Invalid order cursor: " + token, exception);
+        }
+    }
+
+    public String encode() {
+        var value = createdDate + "_" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
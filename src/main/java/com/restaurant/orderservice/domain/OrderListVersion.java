@@ -0,0 +1,19 @@
+package com.restaurant.orderservice.domain;
+
+import java.time.Instant;
+
+// Changes whenever an order of the user is added, updated or archived, without reading
+// the orders themselves.
+public record OrderListVersion(
+        long orderCount,
+        Long maxId,
+        Long versionSum,
+        Instant lastModifiedDate
+) {
+
+    public String tag() {
+        return Long.toHexString(orderCount) + "-" + Long.toHexString(maxId == null ? 0 : maxId)
+                + "-" + Long.toHexString(versionSum == null ? 0 : versionSum)
+                + "-" + Long.toHexString(lastModifiedDate == null ? 0 : lastModifiedDate.toEpochMilli());
+    }
+}
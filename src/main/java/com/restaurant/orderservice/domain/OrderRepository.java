@@ -1,10 +1,54 @@
 package com.restaurant.orderservice.domain;
 
+import java.time.Instant;
+
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 
-public interface OrderRepository extends ReactiveCrudRepository<Order,Long> {
+public interface OrderRepository extends ReactiveCrudRepository<Order,Long>, OrderBatchRepository {
     Flux<Order> findAllByCreatedBy(String userId);
+
+    Flux<Order> findAllByCreatedByOrderByCreatedDateDescIdDesc(String userId);
+
+    @Query("""
+            SELECT * FROM order_details
+            WHERE created_by = :userId
+            ORDER BY created_date DESC, id DESC
+            LIMIT :limit
+            """)
+    Flux<Order> findPageByCreatedBy(String userId, int limit);
+
+    @Query("""
+            SELECT * FROM order_details
+            WHERE created_by = :userId AND (created_date, id) < (:createdDate, :id)
+            ORDER BY created_date DESC, id DESC
+            LIMIT :limit
+            """)
+    Flux<Order> findPageByCreatedByAfter(String userId, Instant createdDate, Long id, int limit);
+
+    @Query("""
+            SELECT count(*) AS order_count, max(id) AS max_id, sum(version) AS version_sum,
+                   max(last_modified_date) AS last_modified_date
+            FROM orders
+            WHERE created_by = :userId
+            """)
+    Mono<OrderListVersion> findListVersionByCreatedBy(String userId);
+
+    @Query("""
+            WITH dispatched AS (
+                UPDATE orders
+                SET status = order_status_code('DISPATCHED'), version = version + 1, last_modified_date = now()
+                WHERE id = ANY(:ids)
+                RETURNING *
+            )
+            SELECT dispatched.id, food_ref, food_snapshot.food_description, food_snapshot.price AS food_price,
+                   quantity, status, created_date, last_modified_date, version, created_by, last_modified_by
+            FROM dispatched
+            LEFT JOIN food_snapshot ON food_snapshot.id = dispatched.food_snapshot_id
+            """)
+    Flux<Order> markDispatched(Long[] ids);
 }
 
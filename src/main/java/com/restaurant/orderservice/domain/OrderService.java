@@ -1,47 +1,177 @@
 package com.restaurant.orderservice.domain;
 
-import com.restaurant.orderservice.event.OrderAcceptedMessage;
+import com.restaurant.orderservice.config.DispatchProperties;
+import com.restaurant.orderservice.config.ReadWriteRoutingConnectionFactory;
 import com.restaurant.orderservice.event.OrderDispatchedMessage;
+import com.restaurant.orderservice.event.OrderOutboxEntry;
+import com.restaurant.orderservice.event.OrderOutboxRelay;
+import com.restaurant.orderservice.event.OrderOutboxRepository;
 import com.restaurant.orderservice.web.Food;
 import com.restaurant.orderservice.web.FoodClient;
+import com.restaurant.orderservice.web.OrderRequest;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cloud.stream.function.StreamBridge;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuples;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+import java.util.function.UnaryOperator;
 
 @Service
 public class OrderService {
 
     private final OrderRepository orderRepository;
+    private final OrderSummaryRepository summaryRepository;
+    private final OrderOutboxRepository outboxRepository;
+    private final OrderOutboxRelay outboxRelay;
+    private final OrderStatusHub orderStatusHub;
     private final FoodClient foodClient;
-    private final StreamBridge streamBridge;
+    private final TransactionalOperator transactionalOperator;
+    private final DispatchProperties dispatchProperties;
+    private final DistributionSummary dispatchBatchSize;
+    private final Timer dispatchBatchApply;
+    private final Timer foodLookupStage;
+    private final Timer persistStage;
+    private final Timer outboxStage;
+    private final Map<SubmitOutcome, Timer> submitTimers = new EnumMap<>(SubmitOutcome.class);
 
 
     private static final Logger log =
             LoggerFactory.getLogger(OrderService.class);
 
+    private static final Duration MAX_CONSUMER_BACKOFF = Duration.ofSeconds(10);
+
 
-    public OrderService(OrderRepository orderRepository, FoodClient foodClient, StreamBridge streamBridge) {
+    public OrderService(OrderRepository orderRepository, OrderSummaryRepository summaryRepository,
+                        OrderOutboxRepository outboxRepository,
+                        OrderOutboxRelay outboxRelay, OrderStatusHub orderStatusHub, FoodClient foodClient,
+                        TransactionalOperator transactionalOperator, DispatchProperties dispatchProperties,
+                        MeterRegistry meterRegistry) {
         this.orderRepository = orderRepository;
+        this.summaryRepository = summaryRepository;
+        this.outboxRepository = outboxRepository;
+        this.outboxRelay = outboxRelay;
+        this.orderStatusHub = orderStatusHub;
         this.foodClient = foodClient;
-        this.streamBridge = streamBridge;
+        this.transactionalOperator = transactionalOperator;
+        this.dispatchProperties = dispatchProperties;
+        this.dispatchBatchSize = DistributionSummary.builder("order.dispatch.batch.size")
+                .description("Number of dispatched events applied with a single update")
+                .register(meterRegistry);
+        this.dispatchBatchApply = Timer.builder("order.dispatch.batch.apply")
+                .description("Time taken to apply a batch of dispatched events")
+                .register(meterRegistry);
+        this.foodLookupStage = submitStageTimer("food_lookup", meterRegistry);
+        this.persistStage = submitStageTimer("persist", meterRegistry);
+        this.outboxStage = submitStageTimer("outbox", meterRegistry);
+        for (var outcome : SubmitOutcome.values()) {
+            submitTimers.put(outcome, Timer.builder("order.submit")
+                    .description("Time taken to submit an order, by outcome")
+                    .tag("outcome", outcome.outcome)
+                    .tag("reason", outcome.reason)
+                    .register(meterRegistry));
+        }
     }
 
     public Flux<Order> getAllOrders(String userId) {
-        return orderRepository.findAllByCreatedBy(userId);
+        return ReadWriteRoutingConnectionFactory.readOnly(
+                orderRepository.findAllByCreatedByOrderByCreatedDateDescIdDesc(userId));
+    }
+
+    public Flux<Order> getOrders(String userId, OrderCursor after, int limit) {
+        return ReadWriteRoutingConnectionFactory.readOnly(findPage(userId, after, limit));
+    }
+
+    // The page is served under the ETag of the given version, so it comes from the replica
+    // only once the replica has caught up with that version; otherwise the client would
+    // cache a stale page and keep getting 304s for it.
+    public Flux<Order> getOrders(String userId, OrderCursor after, int limit, OrderListVersion version) {
+        return ReadWriteRoutingConnectionFactory.readOnly(orderRepository.findListVersionByCreatedBy(userId))
+                .flatMapMany(replicaVersion -> replicaVersion.equals(version)
+                        ? getOrders(userId, after, limit)
+                        : findPage(userId, after, limit));
+    }
+
+    // Read from the primary: a replica lagging behind a new order would answer 304 for a
+    // list that has changed. The aggregate is cheap enough not to need the replica.
+    public Mono<OrderListVersion> getOrderListVersion(String userId) {
+        return orderRepository.findListVersionByCreatedBy(userId);
+    }
+
+    private Flux<Order> findPage(String userId, OrderCursor after, int limit) {
+        return after == null
+                ? orderRepository.findPageByCreatedBy(userId, limit)
+                : orderRepository.findPageByCreatedByAfter(userId, after.createdDate(), after.id(), limit);
+    }
+
+    public Mono<OrderSummary> getSummary(String userId) {
+        return ReadWriteRoutingConnectionFactory.readOnly(summaryRepository.findById(userId))
+                .defaultIfEmpty(OrderSummary.empty(userId));
     }
 
 
 
 
     public Mono<Order> submitOrder(String ref, int quantity) {
-        return foodClient.getFoodByRef(ref).map(food -> buildAcceptedOrder(food, quantity))
-                .defaultIfEmpty(buildRejectedOrder(ref, quantity))
-                .flatMap(orderRepository::save)
-                .doOnNext(this::publishOrderAcceptedEvent);
+        return submitOrder(ref, quantity, UnaryOperator.identity());
+    }
+
+    // The save of the order is passed through persist inside the order's transaction, so
+    // what persist adds around it commits or rolls back together with the order.
+    public Mono<Order> submitOrder(String ref, int quantity, UnaryOperator<Mono<Order>> persist) {
+        return Mono.defer(() -> {
+            var sample = Timer.start();
+            return timed(decideOrder(ref, quantity), foodLookupStage)
+                    .flatMap(decision -> timed(persist.apply(orderRepository.save(decision.order()))
+                                    .flatMap(savedOrder -> recordSubmitted(List.of(savedOrder)).thenReturn(savedOrder)), persistStage)
+                            .flatMap(savedOrder -> timed(enqueueOrderAcceptedEvents(List.of(savedOrder)), outboxStage)
+                                    .map(events -> Tuples.of(savedOrder, events)))
+                            .as(transactionalOperator::transactional)
+                            .flatMap(committed -> outboxRelay.publishCommitted(committed.getT2())
+                                    .thenReturn(committed.getT1()))
+                            .doOnNext(orderStatusHub::publish)
+                            .doOnSuccess(savedOrder -> sample.stop(submitTimers.get(decision.outcome()))))
+                    .doOnError(exception -> sample.stop(submitTimers.get(SubmitOutcome.FAILED)));
+        });
+    }
+
+    private Mono<OrderDecision> decideOrder(String ref, int quantity) {
+        return foodClient.lookupFood(ref)
+                .map(food -> new OrderDecision(buildAcceptedOrder(food, quantity), SubmitOutcome.ACCEPTED))
+                .defaultIfEmpty(new OrderDecision(buildRejectedOrder(ref, quantity),
+                        SubmitOutcome.REJECTED_FOOD_NOT_FOUND))
+                .onErrorResume(Exception.class, exception -> Mono.just(new OrderDecision(
+                        buildRejectedOrder(ref, quantity), exception instanceof TimeoutException
+                        ? SubmitOutcome.REJECTED_FOOD_TIMEOUT : SubmitOutcome.REJECTED_FOOD_UNAVAILABLE)));
+    }
+
+    public Flux<Order> submitOrders(List<OrderRequest> orderRequests) {
+        return Flux.fromIterable(orderRequests)
+                .flatMapSequential(orderRequest -> foodClient.getFoodByRef(orderRequest.ref())
+                        .map(food -> buildAcceptedOrder(food, orderRequest.quantity()))
+                        .defaultIfEmpty(buildRejectedOrder(orderRequest.ref(), orderRequest.quantity())))
+                .collectList()
+                .flatMap(orders -> orderRepository.insertAll(orders)
+                        .collectList()
+                        .flatMap(savedOrders -> recordSubmitted(savedOrders).thenReturn(savedOrders))
+                        .flatMap(savedOrders -> enqueueOrderAcceptedEvents(savedOrders)
+                                .map(events -> Tuples.of(savedOrders, events)))
+                        .as(transactionalOperator::transactional)
+                        .flatMap(committed -> outboxRelay.publishCommitted(committed.getT2())
+                                .thenReturn(committed.getT1())))
+                .flatMapIterable(orders -> orders)
+                .doOnNext(orderStatusHub::publish);
     }
 
     public static Order buildRejectedOrder(String ref, int quantity) {
@@ -52,43 +182,108 @@ public class OrderService {
         return Order.of(food.ref(), food.description() + " - " + food.chef(), quantity, food.price(), OrderStatus.ACCEPTED);
     }
 
-    private void publishOrderAcceptedEvent(Order order) {
-        if (!order.status().equals(OrderStatus.ACCEPTED)) {
-            return;
+    private Mono<Void> recordSubmitted(List<Order> orders) {
+        var orderIds = orders.stream().map(Order::id).toArray(Long[]::new);
+        return summaryRepository.recordSubmitted(orderIds).then();
+    }
+
+    private Mono<List<OrderOutboxEntry>> enqueueOrderAcceptedEvents(List<Order> orders) {
+        // The outbox row commits with the order; OrderOutboxRelay publishes it afterwards,
+        // straight away when publishing on commit and otherwise on its next poll.
+        var entries = orders.stream()
+                .filter(order -> order.status().equals(OrderStatus.ACCEPTED))
+                .map(order -> OrderOutboxEntry.of(order.id()))
+                .toList();
+        if (entries.isEmpty()) {
+            return Mono.just(List.of());
         }
-        var orderAcceptedMessage =
-                new OrderAcceptedMessage(order.id());
-        log.info("Sending order accepted event with id: {}", order.id());
-        var result = streamBridge.send("acceptOrder-out-0",
-                orderAcceptedMessage);
-        log.info("Result of sending data for order with id {}: {}",
-                order.id(), result);
+        log.info("Enqueueing {} order accepted events", entries.size());
+        return outboxRepository.saveAll(entries).collectList();
     }
 
 
     public Flux<Order> consumeOrderDispatchedEvent(
             Flux<OrderDispatchedMessage> flux
     ) {
+        // Messages are partitioned into lanes by order id: each lane applies its batches
+        // one at a time, so updates for the same order never overtake each other, while
+        // the number of lanes bounds how many connections the consumer can hold.
+        // bufferTimeout fails when a batch is due and nothing requested it, which is the case
+        // while a lane retries a batch, so the batches waiting for it are queued. bufferTimeout
+        // requests its lane unbounded anyway, so this holds no more messages than before.
+        var lanes = dispatchProperties.concurrency();
         return flux
-                .flatMap(message ->
-                        orderRepository.findById(message.orderId()))
-                .map(this::buildDispatchedOrder)
-                .flatMap(orderRepository::save);
-    }
-
-    private Order buildDispatchedOrder(Order existingOrder) {
-        return new Order(
-                existingOrder.id(),
-                existingOrder.foodRef(),
-                existingOrder.foodDescription(),
-                existingOrder.quantity(),
-                existingOrder.foodPrice(),
-                OrderStatus.DISPATCHED,
-                existingOrder.createdDate(),
-                existingOrder.lastModifiedDate(),
-                existingOrder.createdBy(),
-                existingOrder.lastModifiedBy(),
-                existingOrder.version()
-        );
+                .limitRate(dispatchProperties.prefetch())
+                .groupBy(message -> Math.floorMod(Long.hashCode(message.orderId()), lanes),
+                        dispatchProperties.prefetch())
+                .flatMap(lane -> lane
+                        .bufferTimeout(dispatchProperties.batchSize(), dispatchProperties.maxLatency())
+                        .onBackpressureBuffer()
+                        .concatMap(this::applyDispatchedWithRetry), lanes)
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, dispatchProperties.retryBackoff())
+                        .maxBackoff(MAX_CONSUMER_BACKOFF)
+                        .transientErrors(true)
+                        .doBeforeRetry(signal -> log.error("Consuming dispatched events failed, resubscribing",
+                                signal.failure())));
+    }
+
+    private Flux<Order> applyDispatchedWithRetry(List<OrderDispatchedMessage> messages) {
+        return applyDispatched(messages)
+                .retryWhen(Retry.backoff(dispatchProperties.maxRetries(), dispatchProperties.retryBackoff()))
+                .onErrorResume(exception -> {
+                    log.error("Failed to apply dispatched events for orders {}", messages, exception);
+                    return Flux.empty();
+                });
+    }
+
+    private Flux<Order> applyDispatched(List<OrderDispatchedMessage> messages) {
+        return Flux.defer(() -> {
+            var orderIds = messages.stream()
+                    .map(OrderDispatchedMessage::orderId)
+                    .distinct()
+                    .toArray(Long[]::new);
+            dispatchBatchSize.record(orderIds.length);
+            var sample = Timer.start();
+            return summaryRepository.recordDispatched(orderIds)
+                    .thenMany(orderRepository.markDispatched(orderIds))
+                    .collectList()
+                    .as(transactionalOperator::transactional)
+                    .flatMapIterable(orders -> orders)
+                    .doOnNext(orderStatusHub::publish)
+                    .doOnComplete(() -> sample.stop(dispatchBatchApply));
+        });
+    }
+
+    private static <T> Mono<T> timed(Mono<T> stage, Timer timer) {
+        return Mono.defer(() -> {
+            var sample = Timer.start();
+            return stage.doOnTerminate(() -> sample.stop(timer));
+        });
+    }
+
+    private static Timer submitStageTimer(String stage, MeterRegistry meterRegistry) {
+        return Timer.builder("order.submit.stage")
+                .description("Time taken by each stage of an order submission")
+                .tag("stage", stage)
+                .register(meterRegistry);
+    }
+
+    private record OrderDecision(Order order, SubmitOutcome outcome) {
+    }
+
+    private enum SubmitOutcome {
+        ACCEPTED("ACCEPTED", "none"),
+        REJECTED_FOOD_NOT_FOUND("REJECTED", "food_not_found"),
+        REJECTED_FOOD_TIMEOUT("REJECTED", "food_timeout"),
+        REJECTED_FOOD_UNAVAILABLE("REJECTED", "food_unavailable"),
+        FAILED("FAILED", "error");
+
+        private final String outcome;
+        private final String reason;
+
+        SubmitOutcome(String outcome, String reason) {
+            this.outcome = outcome;
+            this.reason = reason;
+        }
     }
 }
@@ -1,7 +1,28 @@
 package com.restaurant.orderservice.domain;
 
+// Stored as a smallint code. The codes are fixed, and order_status_code() and
+// order_status_name() in the schema map them the same way.
 public enum OrderStatus {
-    ACCEPTED,
-    REJECTED,
-    DISPATCHED
+    ACCEPTED(0),
+    REJECTED(1),
+    DISPATCHED(2);
+
+    private final short code;
+
+    OrderStatus(int code) {
+        this.code = (short) code;
+    }
+
+    public short code() {
+        return code;
+    }
+
+    public static OrderStatus fromCode(short code) {
+        for (var status : values()) {
+            if (status.code == code) {
+                return status;
+            }
+        }
+        throw new IllegalArgumentException("Unknown order status code " + code);
+    }
 }
@@ -0,0 +1,99 @@
+package com.restaurant.orderservice.domain;
+
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.restaurant.orderservice.config.OrderEventsProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import org.springframework.stereotype.Component;
+
+// Fans order status changes out to the open streams of the user who placed the order.
+// An idle subscriber costs a map entry and an empty queue; one that lets its queue fill
+// up is evicted rather than slowing down publishers, and is expected to reconnect.
+@Component
+public class OrderStatusHub {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderStatusHub.class);
+
+    private final OrderEventsProperties orderEventsProperties;
+    private final ConcurrentMap<String, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final Counter publishedCounter;
+    private final Counter evictedCounter;
+
+    public OrderStatusHub(OrderEventsProperties orderEventsProperties, MeterRegistry meterRegistry) {
+        this.orderEventsProperties = orderEventsProperties;
+        Gauge.builder("order.events.subscribers", subscriberCount, AtomicInteger::get)
+                .description("Connected order status subscribers")
+                .register(meterRegistry);
+        this.publishedCounter = Counter.builder("order.events.published")
+                .description("Order status changes delivered to subscriber buffers")
+                .register(meterRegistry);
+        this.evictedCounter = Counter.builder("order.events.evicted")
+                .description("Subscribers disconnected because their buffer was full")
+                .register(meterRegistry);
+    }
+
+    public Flux<Order> subscribe(String userId) {
+        return Flux.defer(() -> {
+            var subscriber = new Subscriber(Sinks.many().unicast()
+                    .onBackpressureBuffer(new ArrayBlockingQueue<>(orderEventsProperties.subscriberBufferSize())),
+                    Sinks.empty());
+            subscribers.compute(userId, (key, userSubscribers) -> {
+                var updated = userSubscribers != null ? userSubscribers : ConcurrentHashMap.<Subscriber>newKeySet();
+                updated.add(subscriber);
+                return updated;
+            });
+            subscriberCount.incrementAndGet();
+            return subscriber.orders().asFlux()
+                    .takeUntilOther(subscriber.evicted().asMono())
+                    .doFinally(signal -> unsubscribe(userId, subscriber));
+        });
+    }
+
+    public void publish(Order order) {
+        if (order.createdBy() == null) {
+            return;
+        }
+        var userSubscribers = subscribers.get(order.createdBy());
+        if (userSubscribers == null) {
+            return;
+        }
+        for (var subscriber : userSubscribers) {
+            var result = subscriber.emit(order);
+            if (result.isSuccess()) {
+                publishedCounter.increment();
+            } else if (result == Sinks.EmitResult.FAIL_OVERFLOW
+                    && subscriber.evicted().tryEmitEmpty().isSuccess()) {
+                log.info("Evicting slow order status subscriber for user {}", order.createdBy());
+                evictedCounter.increment();
+            }
+        }
+    }
+
+    private void unsubscribe(String userId, Subscriber subscriber) {
+        subscribers.computeIfPresent(userId, (key, userSubscribers) -> {
+            userSubscribers.remove(subscriber);
+            return userSubscribers.isEmpty() ? null : userSubscribers;
+        });
+        subscriberCount.decrementAndGet();
+    }
+
+    private record Subscriber(Sinks.Many<Order> orders, Sinks.Empty<Void> evicted) {
+
+        // Dispatch lanes publish concurrently; the sink expects one emitter at a time.
+        synchronized Sinks.EmitResult emit(Order order) {
+            return orders.tryEmitNext(order);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.restaurant.orderservice.domain;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+@Table(name = "order_summary")
+public record OrderSummary(
+        @Id
+        String userId,
+
+        long orderCount,
+        long acceptedCount,
+        long dispatchedCount,
+        BigDecimal totalSpend,
+        Instant lastOrderDate
+) {
+    public static OrderSummary empty(String userId) {
+        return new OrderSummary(userId, 0, 0, 0, BigDecimal.ZERO, null);
+    }
+}
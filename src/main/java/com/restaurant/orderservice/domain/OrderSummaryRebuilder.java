@@ -0,0 +1,74 @@
+package com.restaurant.orderservice.domain;
+
+import java.util.List;
+
+import com.restaurant.orderservice.config.OrderSummaryProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Mono;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+// Recomputes order_summary from orders, a chunk of users per transaction, so it never
+// holds more than one chunk in memory or locks more than one chunk of summaries.
+@Component
+public class OrderSummaryRebuilder {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderSummaryRebuilder.class);
+
+    private final OrderSummaryRepository summaryRepository;
+    private final TransactionalOperator transactionalOperator;
+    private final OrderSummaryProperties summaryProperties;
+    private final Timer rebuildTimer;
+
+    public OrderSummaryRebuilder(OrderSummaryRepository summaryRepository, TransactionalOperator transactionalOperator,
+                                 OrderSummaryProperties summaryProperties, MeterRegistry meterRegistry) {
+        this.summaryRepository = summaryRepository;
+        this.transactionalOperator = transactionalOperator;
+        this.summaryProperties = summaryProperties;
+        this.rebuildTimer = Timer.builder("order.summary.rebuild")
+                .description("Time taken to rebuild the per-user order summaries")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        if (summaryProperties.rebuildOnStartup()) {
+            rebuild().subscribe(
+                    users -> log.info("Rebuilt order summaries of {} users", users),
+                    exception -> log.error("Failed to rebuild order summaries", exception));
+        }
+    }
+
+    public Mono<Long> rebuild() {
+        return Mono.defer(() -> {
+            var sample = Timer.start();
+            return rebuildChunk("")
+                    .expand(chunk -> chunk.size() == summaryProperties.rebuildChunkSize()
+                            ? rebuildChunk(chunk.get(chunk.size() - 1))
+                            : Mono.empty())
+                    .reduce(0L, (users, chunk) -> users + chunk.size())
+                    .doOnSuccess(users -> sample.stop(rebuildTimer));
+        });
+    }
+
+    private Mono<List<String>> rebuildChunk(String after) {
+        // Locking the existing summaries first makes concurrent incremental updates wait
+        // until the recomputed values are committed, then apply on top of them.
+        return summaryRepository.findUserIdsAfter(after, summaryProperties.rebuildChunkSize())
+                .collectList()
+                .filter(userIds -> !userIds.isEmpty())
+                .flatMap(userIds -> {
+                    var chunk = userIds.toArray(String[]::new);
+                    return summaryRepository.lockUserIds(chunk)
+                            .then(summaryRepository.recompute(chunk))
+                            .thenReturn(userIds)
+                            .as(transactionalOperator::transactional);
+                });
+    }
+}
@@ -0,0 +1,94 @@
+package com.restaurant.orderservice.domain;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+
+// Incremental updates, archival and the rebuild aggregate orders with the same
+// expressions, so a rebuild of a consistent summary is a no-op.
+public interface OrderSummaryRepository extends ReactiveCrudRepository<OrderSummary, String> {
+
+    @Modifying
+    @Query("""
+            INSERT INTO order_summary (user_id, order_count, accepted_count, dispatched_count, total_spend, last_order_date)
+            SELECT created_by,
+                   count(*),
+                   count(*) FILTER (WHERE status = order_status_code('ACCEPTED')),
+                   count(*) FILTER (WHERE status = order_status_code('DISPATCHED')),
+                   coalesce(sum((food_price * quantity)::numeric(16, 2)), 0),
+                   max(created_date)
+            FROM order_details
+            WHERE id = ANY(:orderIds) AND created_by IS NOT NULL
+            GROUP BY created_by
+            ON CONFLICT (user_id) DO UPDATE SET
+                order_count = order_summary.order_count + EXCLUDED.order_count,
+                accepted_count = order_summary.accepted_count + EXCLUDED.accepted_count,
+                dispatched_count = order_summary.dispatched_count + EXCLUDED.dispatched_count,
+                total_spend = order_summary.total_spend + EXCLUDED.total_spend,
+                last_order_date = GREATEST(order_summary.last_order_date, EXCLUDED.last_order_date)
+            """)
+    Mono<Integer> recordSubmitted(Long[] orderIds);
+
+    // Must run before the orders are marked as dispatched, in the same transaction. Locking
+    // the orders makes a concurrent redelivery of the same event see them as dispatched.
+    @Modifying
+    @Query("""
+            WITH pending AS (
+                SELECT created_by, status FROM orders
+                WHERE id = ANY(:orderIds) AND status <> order_status_code('DISPATCHED') AND created_by IS NOT NULL
+                FOR UPDATE
+            )
+            UPDATE order_summary
+            SET accepted_count = order_summary.accepted_count - pending_by_user.accepted,
+                dispatched_count = order_summary.dispatched_count + pending_by_user.dispatched
+            FROM (SELECT created_by,
+                         count(*) FILTER (WHERE status = order_status_code('ACCEPTED')) AS accepted,
+                         count(*) AS dispatched
+                  FROM pending
+                  GROUP BY created_by) pending_by_user
+            WHERE order_summary.user_id = pending_by_user.created_by
+            """)
+    Mono<Integer> recordDispatched(Long[] orderIds);
+
+    @Query("""
+            SELECT created_by FROM orders WHERE created_by > :after
+            UNION
+            SELECT created_by FROM orders_archive WHERE created_by > :after
+            ORDER BY created_by
+            LIMIT :limit
+            """)
+    Flux<String> findUserIdsAfter(String after, int limit);
+
+    @Query("SELECT user_id FROM order_summary WHERE user_id = ANY(:userIds) FOR UPDATE")
+    Flux<String> lockUserIds(String[] userIds);
+
+    @Modifying
+    @Query("""
+            INSERT INTO order_summary (user_id, order_count, accepted_count, dispatched_count, total_spend, last_order_date)
+            SELECT user_id, sum(order_count), sum(accepted_count), sum(dispatched_count), sum(total_spend), max(last_order_date)
+            FROM (SELECT created_by AS user_id,
+                         count(*) AS order_count,
+                         count(*) FILTER (WHERE status = order_status_code('ACCEPTED')) AS accepted_count,
+                         count(*) FILTER (WHERE status = order_status_code('DISPATCHED')) AS dispatched_count,
+                         coalesce(sum((food_price * quantity)::numeric(16, 2)), 0) AS total_spend,
+                         max(created_date) AS last_order_date
+                  FROM order_details
+                  WHERE created_by = ANY(:userIds)
+                  GROUP BY created_by
+                  UNION ALL
+                  SELECT created_by, order_count, accepted_count, dispatched_count, total_spend, last_order_date
+                  FROM orders_archive
+                  WHERE created_by = ANY(:userIds)) user_orders
+            GROUP BY user_id
+            ON CONFLICT (user_id) DO UPDATE SET
+                order_count = EXCLUDED.order_count,
+                accepted_count = EXCLUDED.accepted_count,
+                dispatched_count = EXCLUDED.dispatched_count,
+                total_spend = EXCLUDED.total_spend,
+                last_order_date = EXCLUDED.last_order_date
+            """)
+    Mono<Integer> recompute(String[] userIds);
+}
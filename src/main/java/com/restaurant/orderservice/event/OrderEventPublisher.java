@@ -0,0 +1,191 @@
+package com.restaurant.orderservice.event;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import com.restaurant.orderservice.config.OutboxProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+
+// Sends run on a dedicated thread fed by a bounded buffer, so neither event-loop nor R2DBC
+// threads wait on the broker. The thread sends up to a batch of events, then waits for all
+// of their publisher confirms at once. Events still buffered or awaiting a confirm when the
+// publisher stops fail, so their callers leave them to the relay instead of waiting forever.
+@Component
+public class OrderEventPublisher {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderEventPublisher.class);
+
+    private static final String ACCEPT_ORDER_BINDING = "acceptOrder-out-0";
+    private static final long POLL_MILLIS = 100;
+
+    private final StreamBridge streamBridge;
+    private final OutboxProperties outboxProperties;
+    private final BlockingQueue<PendingPublish> buffer;
+    private final Scheduler scheduler = Schedulers.newSingle("order-publisher", true);
+    private final Counter rejectedCounter;
+    private final Timer confirmTimer;
+    private volatile boolean running;
+    private volatile boolean stopped;
+
+    public OrderEventPublisher(StreamBridge streamBridge, OutboxProperties outboxProperties,
+                               MeterRegistry meterRegistry) {
+        this.streamBridge = streamBridge;
+        this.outboxProperties = outboxProperties;
+        this.buffer = new ArrayBlockingQueue<>(outboxProperties.bufferCapacity());
+        Gauge.builder("order.publisher.queue.depth", buffer, BlockingQueue::size)
+                .description("Order events waiting to be sent to the broker")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("order.publisher.rejected")
+                .description("Order events not queued because the publish buffer was full")
+                .register(meterRegistry);
+        this.confirmTimer = Timer.builder("order.publisher.confirm")
+                .description("Time from sending an order event until the broker confirmed it")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        scheduler.schedule(this::drain);
+    }
+
+    @PreDestroy
+    public void stop() {
+        stopped = true;
+        running = false;
+        scheduler.dispose();
+        failBuffered();
+    }
+
+    // Emits true once the broker has confirmed the event, false if it was rejected, nacked
+    // or not confirmed in time. Unconfirmed events stay in the outbox for the relay.
+    public Mono<Boolean> publish(OrderOutboxEntry entry) {
+        return Mono.defer(() -> {
+            var pending = new PendingPublish(entry, Sinks.one());
+            if (buffer.offer(pending)) {
+                if (stopped) {
+                    failBuffered();
+                }
+                return pending.result().asMono();
+            }
+            if (outboxProperties.bufferOverflow() == OutboxProperties.BufferOverflow.REJECT) {
+                rejectedCounter.increment();
+                return Mono.just(false);
+            }
+            return Mono.fromCallable(() -> buffer.offer(pending,
+                            outboxProperties.bufferOfferTimeout().toMillis(), TimeUnit.MILLISECONDS))
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .flatMap(queued -> {
+                        if (queued) {
+                            return pending.result().asMono();
+                        }
+                        rejectedCounter.increment();
+                        return Mono.just(false);
+                    });
+        });
+    }
+
+    private void drain() {
+        var batch = new ArrayList<PendingPublish>(outboxProperties.batchSize());
+        while (running) {
+            try {
+                var first = buffer.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                buffer.drainTo(batch, outboxProperties.batchSize() - 1);
+                publishBatch(batch);
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                batch.forEach(OrderEventPublisher::failStopped);
+                return;
+            } catch (RuntimeException exception) {
+                log.error("Failed to publish order events", exception);
+                batch.forEach(pending -> pending.result().tryEmitValue(false));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void failBuffered() {
+        PendingPublish pending;
+        while ((pending = buffer.poll()) != null) {
+            failStopped(pending);
+        }
+    }
+
+    private static void failStopped(PendingPublish pending) {
+        pending.result().tryEmitError(new IllegalStateException("The order event publisher was stopped"));
+    }
+
+    private void publishBatch(List<PendingPublish> batch) throws InterruptedException {
+        var sentAt = System.nanoTime();
+        var confirmations = new ArrayList<CorrelationData>(batch.size());
+        for (var pending : batch) {
+            confirmations.add(send(pending.entry()));
+        }
+        var deadline = sentAt + outboxProperties.confirmTimeout().toNanos();
+        for (int index = 0; index < batch.size(); index++) {
+            var result = batch.get(index).result();
+            var correlationData = confirmations.get(index);
+            if (correlationData == null) {
+                result.tryEmitValue(false);
+            } else if (!outboxProperties.publisherConfirms()) {
+                result.tryEmitValue(true);
+            } else {
+                var confirmed = awaitConfirm(correlationData, deadline);
+                if (confirmed) {
+                    confirmTimer.record(System.nanoTime() - sentAt, TimeUnit.NANOSECONDS);
+                }
+                result.tryEmitValue(confirmed);
+            }
+        }
+    }
+
+    private CorrelationData send(OrderOutboxEntry entry) {
+        var correlationData = new CorrelationData(String.valueOf(entry.id()));
+        var message = MessageBuilder.withPayload(new OrderAcceptedMessage(entry.orderId()))
+                .setHeader(AmqpHeaders.PUBLISH_CONFIRM_CORRELATION, correlationData)
+                .build();
+        log.info("Sending order accepted event with id: {}", entry.orderId());
+        return streamBridge.send(ACCEPT_ORDER_BINDING, message) ? correlationData : null;
+    }
+
+    private static boolean awaitConfirm(CorrelationData correlationData, long deadline)
+            throws InterruptedException {
+        try {
+            var remaining = Math.max(0, deadline - System.nanoTime());
+            return correlationData.getFuture().get(remaining, TimeUnit.NANOSECONDS).isAck();
+        } catch (ExecutionException | TimeoutException exception) {
+            return false;
+        }
+    }
+
+    private record PendingPublish(OrderOutboxEntry entry, Sinks.One<Boolean> result) {
+    }
+}
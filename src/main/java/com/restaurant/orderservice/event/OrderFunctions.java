@@ -10,7 +10,7 @@ import reactor.core.publisher.Flux;
 
 import java.util.function.Consumer;
 
-@Configuration
+@Configuration(proxyBeanMethods = false)
 public class OrderFunctions {
 
 
@@ -21,7 +21,8 @@ public class OrderFunctions {
         return flux -> orderService.consumeOrderDispatchedEvent(flux)
                 .doOnNext(order -> log.info("The order with id {} is dispatched",
                         order.id()))
-                .subscribe();
+                .subscribe(null, exception ->
+                        log.error("The order dispatched consumer terminated", exception));
 
     }
 }
@@ -0,0 +1,22 @@
+package com.restaurant.orderservice.event;
+
+import java.time.Instant;
+
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+@Table(name = "order_outbox")
+public record OrderOutboxEntry(
+        @Id
+        Long id,
+
+        Long orderId,
+
+        @CreatedDate
+        Instant createdDate
+) {
+    public static OrderOutboxEntry of(Long orderId) {
+        return new OrderOutboxEntry(null, orderId, null);
+    }
+}
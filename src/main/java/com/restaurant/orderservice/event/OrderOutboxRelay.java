@@ -0,0 +1,150 @@
+package com.restaurant.orderservice.event;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PreDestroy;
+
+import com.restaurant.orderservice.config.OutboxProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+@Component
+public class OrderOutboxRelay {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderOutboxRelay.class);
+    private final OrderOutboxRepository outboxRepository;
+    private final OrderEventPublisher eventPublisher;
+    private final TransactionalOperator transactionalOperator;
+    private final OutboxProperties outboxProperties;
+    private final Counter publishedCounter;
+    private final Counter failedCounter;
+    private final Timer sendTimer;
+    private final AtomicLong pendingEntries = new AtomicLong();
+    private final AtomicLong lagMillis = new AtomicLong();
+    private Disposable relay;
+
+    public OrderOutboxRelay(OrderOutboxRepository outboxRepository, OrderEventPublisher eventPublisher,
+                            TransactionalOperator transactionalOperator, OutboxProperties outboxProperties,
+                            MeterRegistry meterRegistry) {
+        this.outboxRepository = outboxRepository;
+        this.eventPublisher = eventPublisher;
+        this.transactionalOperator = transactionalOperator;
+        this.outboxProperties = outboxProperties;
+        this.publishedCounter = Counter.builder("order.outbox.published")
+                .description("Outbox entries published and confirmed by the broker")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("order.outbox.failed")
+                .description("Outbox entries whose publication was not confirmed and will be retried")
+                .register(meterRegistry);
+        this.sendTimer = Timer.builder("order.outbox.send")
+                .description("Time taken to send a batch of outbox entries and receive broker confirms")
+                .register(meterRegistry);
+        Gauge.builder("order.outbox.pending", pendingEntries, AtomicLong::get)
+                .description("Outbox entries waiting to be published")
+                .register(meterRegistry);
+        TimeGauge.builder("order.outbox.lag", lagMillis, TimeUnit.MILLISECONDS, AtomicLong::get)
+                .description("Age of the oldest outbox entry waiting to be published")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        relay = Flux.interval(outboxProperties.pollInterval())
+                .onBackpressureDrop()
+                .concatMap(tick -> relayPending(), 1)
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (relay != null) {
+            relay.dispose();
+        }
+    }
+
+    // Publishes entries straight after their transaction committed instead of waiting for
+    // the next poll. Entries that are not confirmed stay in the outbox for relayPending.
+    public Mono<Void> publishCommitted(List<OrderOutboxEntry> entries) {
+        if (!outboxProperties.publishOnCommit() || entries.isEmpty()) {
+            return Mono.empty();
+        }
+        var publication = publish(entries)
+                .flatMap(outboxRepository::deleteAllById)
+                .onErrorResume(exception -> {
+                    log.warn("Failed to publish committed order events, leaving them to the relay", exception);
+                    return Mono.empty();
+                });
+        if (outboxProperties.awaitConfirm()) {
+            return publication;
+        }
+        publication.subscribe();
+        return Mono.empty();
+    }
+
+    Mono<Void> relayPending() {
+        return relayBatch()
+                .expand(published -> published == outboxProperties.batchSize() ? relayBatch() : Mono.empty())
+                .then(updateLag())
+                .onErrorResume(exception -> {
+                    log.warn("Failed to relay order outbox", exception);
+                    return Mono.empty();
+                });
+    }
+
+    private Mono<Integer> relayBatch() {
+        return Mono.defer(() -> {
+                    // Young entries are still being published on commit; only pick them up once
+                    // that had its chance to succeed.
+                    var createdBefore = outboxProperties.publishOnCommit()
+                            ? Instant.now().minus(outboxProperties.relayMinAge())
+                            : Instant.now();
+                    return outboxRepository.findNextBatchForUpdate(createdBefore, outboxProperties.batchSize())
+                            .collectList();
+                })
+                .flatMap(entries -> publish(entries)
+                        .flatMap(publishedIds -> outboxRepository.deleteAllById(publishedIds)
+                                .thenReturn(publishedIds.size())))
+                .as(transactionalOperator::transactional);
+    }
+
+    private Mono<List<Long>> publish(List<OrderOutboxEntry> entries) {
+        var sample = Timer.start();
+        return Flux.fromIterable(entries)
+                .flatMapSequential(entry -> eventPublisher.publish(entry)
+                        .filter(published -> published)
+                        .map(published -> entry.id()))
+                .collectList()
+                .doOnNext(publishedIds -> {
+                    sample.stop(sendTimer);
+                    publishedCounter.increment(publishedIds.size());
+                    failedCounter.increment(entries.size() - publishedIds.size());
+                });
+    }
+
+    private Mono<Void> updateLag() {
+        return outboxRepository.count()
+                .doOnNext(pendingEntries::set)
+                .then(outboxRepository.findFirstByOrderByIdAsc()
+                        .map(oldestEntry -> Duration.between(oldestEntry.createdDate(), Instant.now()).toMillis())
+                        .defaultIfEmpty(0L)
+                        .doOnNext(lagMillis::set))
+                .then();
+    }
+}
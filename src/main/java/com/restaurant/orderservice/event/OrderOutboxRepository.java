@@ -0,0 +1,23 @@
+package com.restaurant.orderservice.event;
+
+import java.time.Instant;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+
+public interface OrderOutboxRepository extends ReactiveCrudRepository<OrderOutboxEntry, Long> {
+
+    @Query("""
+            SELECT * FROM order_outbox
+            WHERE created_date < :createdBefore
+            ORDER BY id
+            LIMIT :limit
+            FOR UPDATE SKIP LOCKED
+            """)
+    Flux<OrderOutboxEntry> findNextBatchForUpdate(Instant createdBefore, int limit);
+
+    Mono<OrderOutboxEntry> findFirstByOrderByIdAsc();
+}
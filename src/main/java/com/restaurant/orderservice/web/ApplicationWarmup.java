@@ -0,0 +1,358 @@
+package com.restaurant.orderservice.web;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import javax.annotation.PreDestroy;
+
+import com.restaurant.orderservice.config.ClientProperties;
+import com.restaurant.orderservice.config.CodecConfig;
+import com.restaurant.orderservice.config.WarmupProperties;
+import com.restaurant.orderservice.domain.Order;
+import com.restaurant.orderservice.domain.OrderService;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.PoolMetrics;
+import io.r2dbc.spi.Connection;
+import org.reactivestreams.Publisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.Decoder;
+import org.springframework.core.codec.Encoder;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.DecoderHttpMessageReader;
+import org.springframework.http.codec.EncoderHttpMessageWriter;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriComponentsBuilder;
+
+// Warms the service up before it takes traffic: fills the database and food service
+// connection pools, fetches the issuer's signing keys and runs synthetic orders through the
+// food lookup, the order listing queries and the codecs so the JIT compiles them. The food
+// lookups go to a stub, and the listing queries read the orders of a user who has none;
+// only the first database-iterations send them, as each one is two round trips to the
+// primary per starting pod.
+// WarmupHealthIndicator keeps the readiness probe down until it finishes or the budget runs out.
+@Component
+public class ApplicationWarmup {
+
+    private static final Logger log = LoggerFactory.getLogger(ApplicationWarmup.class);
+
+    static final String WARMUP_USER = "warmup";
+    static final String DATABASE_POOLS = "databasePools";
+    static final String FOOD_POOL = "foodPool";
+    static final String JWKS = "jwks";
+    static final String EXERCISES = "exercises";
+
+    private static final ResolvableType ORDER_TYPE = ResolvableType.forClass(Order.class);
+    private static final ResolvableType ORDER_REQUEST_TYPE = ResolvableType.forClass(OrderRequest.class);
+    private static final int PAGE_SIZE = 50;
+
+    // Well formed, but signed with a key the issuer does not have: rejecting it takes fetching
+    // the issuer's keys.
+    private static final String UNKNOWN_KEY_TOKEN = String.join(".",
+            base64Url("{\"alg\":\"RS256\",\"kid\":\"warmup\"}"),
+            base64Url("{\"sub\":\"" + WARMUP_USER + "\"}"),
+            base64Url("warmup"));
+
+    enum State {
+        PENDING, RUNNING, COMPLETED, BUDGET_EXHAUSTED, DISABLED
+    }
+
+    private final WarmupProperties warmupProperties;
+    private final ClientProperties clientProperties;
+    private final OrderService orderService;
+    private final WebClient webClient;
+    private final List<ConnectionPool> connectionPools;
+    private final Optional<ReactiveJwtDecoder> jwtDecoder;
+    private final Encoder<Order> jsonEncoder;
+    private final Encoder<Order> smileEncoder;
+    private final Decoder<OrderRequest> requestDecoder;
+    private final MeterRegistry meterRegistry;
+    private final List<Order> samplePage;
+    private final Map<String, String> steps = Collections.synchronizedMap(new LinkedHashMap<>());
+    private final AtomicInteger exercised = new AtomicInteger();
+    private volatile State state;
+    private volatile long startedAt;
+    private volatile long finishedAt;
+    private Disposable warmup;
+
+    public ApplicationWarmup(WarmupProperties warmupProperties, ClientProperties clientProperties,
+                             OrderService orderService, WebClient webClient, List<ConnectionPool> connectionPools,
+                             Optional<ReactiveJwtDecoder> jwtDecoder, ServerCodecConfigurer serverCodecConfigurer,
+                             MeterRegistry meterRegistry) {
+        this.warmupProperties = warmupProperties;
+        this.clientProperties = clientProperties;
+        this.orderService = orderService;
+        this.webClient = webClient;
+        this.connectionPools = connectionPools;
+        this.jwtDecoder = jwtDecoder;
+        this.jsonEncoder = orderEncoder(serverCodecConfigurer, MediaType.APPLICATION_JSON);
+        this.smileEncoder = orderEncoder(serverCodecConfigurer, CodecConfig.APPLICATION_SMILE);
+        this.requestDecoder = orderRequestDecoder(serverCodecConfigurer);
+        this.meterRegistry = meterRegistry;
+        this.samplePage = IntStream.range(0, PAGE_SIZE)
+                .mapToObj(i -> OrderService.buildAcceptedOrder(stubFood("warmup-" + i), 1 + i % 5))
+                .toList();
+        this.state = warmupProperties.enabled() ? State.PENDING : State.DISABLED;
+        List.of(DATABASE_POOLS, FOOD_POOL, JWKS, EXERCISES).forEach(step -> steps.put(step, "pending"));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (state != State.PENDING) {
+            return;
+        }
+        startedAt = System.nanoTime();
+        state = State.RUNNING;
+        log.info("Warming up for at most {}", warmupProperties.budget());
+        warmup = Mono.when(
+                        step(DATABASE_POOLS, fillDatabasePools()),
+                        step(FOOD_POOL, fillFoodPool()),
+                        step(JWKS, fetchJwks()))
+                .then(step(EXERCISES, exercise()))
+                .timeout(warmupProperties.budget())
+                .doOnSuccess(done -> finish(State.COMPLETED))
+                .onErrorResume(TimeoutException.class, exception -> {
+                    finish(State.BUDGET_EXHAUSTED);
+                    return Mono.empty();
+                })
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (warmup != null) {
+            warmup.dispose();
+        }
+    }
+
+    State state() {
+        return state;
+    }
+
+    boolean isFinished() {
+        return state != State.PENDING && state != State.RUNNING;
+    }
+
+    Duration elapsed() {
+        if (startedAt == 0) {
+            return Duration.ZERO;
+        }
+        return Duration.ofNanos((finishedAt != 0 ? finishedAt : System.nanoTime()) - startedAt);
+    }
+
+    Duration budget() {
+        return warmupProperties.budget();
+    }
+
+    Map<String, String> steps() {
+        synchronized (steps) {
+            return new LinkedHashMap<>(steps);
+        }
+    }
+
+    int exercised() {
+        return exercised.get();
+    }
+
+    int iterations() {
+        return warmupProperties.iterations();
+    }
+
+    private void finish(State outcome) {
+        finishedAt = System.nanoTime();
+        state = outcome;
+        log.info("Warm-up {} after {}: {}", outcome == State.COMPLETED ? "completed" : "ran out of budget",
+                elapsed(), steps());
+    }
+
+    private Mono<Void> step(String name, Mono<Void> work) {
+        // A failed step is reported but does not hold up the others: a cold service is still
+        // better than one that never becomes ready.
+        return Mono.defer(() -> {
+            var started = System.nanoTime();
+            steps.put(name, "running");
+            return work
+                    .doOnSuccess(done -> completeStep(name, started, "completed", null))
+                    .doOnCancel(() -> completeStep(name, started, "cancelled", null))
+                    .onErrorResume(exception -> {
+                        log.warn("Warm-up step {} failed", name, exception);
+                        completeStep(name, started, "failed", exception);
+                        return Mono.empty();
+                    });
+        });
+    }
+
+    private void completeStep(String name, long started, String outcome, Throwable exception) {
+        var elapsed = Duration.ofNanos(System.nanoTime() - started);
+        Timer.builder("warmup.step")
+                .description("Time taken by each step of the warm-up, by outcome")
+                .tag("step", name)
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .record(elapsed);
+        // Cancelling the warm-up also reaches steps that have already completed.
+        steps.replace(name, "running", outcome + " after " + elapsed.toMillis() + "ms"
+                + (exception != null ? ": " + exception.getMessage() : ""));
+    }
+
+    private Mono<Void> fillDatabasePools() {
+        return Flux.fromIterable(connectionPools)
+                .flatMap(pool -> fill(pool, pool.getMetrics().map(PoolMetrics::getMaxAllocatedSize).orElse(0)))
+                .then();
+    }
+
+    private static Mono<Void> fill(ConnectionPool pool, int size) {
+        // Holding every connection until the last is acquired makes the pool open all of them.
+        if (size == 0) {
+            return Mono.empty();
+        }
+        var acquired = new ConcurrentLinkedQueue<Connection>();
+        return Flux.range(0, size)
+                .flatMapDelayError(i -> Mono.from(pool.create()).doOnNext(acquired::add), size, 1)
+                .then()
+                .doFinally(signal -> acquired.forEach(connection -> Mono.from(connection.close()).subscribe()));
+    }
+
+    private Mono<Void> fillFoodPool() {
+        var connections = Math.max(1, warmupProperties.foodConnections());
+        return Flux.range(0, connections)
+                .flatMapDelayError(i -> webClient.head().uri("/").exchangeToMono(ClientResponse::releaseBody),
+                        connections, 1)
+                .then();
+    }
+
+    private Mono<Void> fetchJwks() {
+        return Mono.justOrEmpty(jwtDecoder)
+                .flatMap(decoder -> decoder.decode(UNKNOWN_KEY_TOKEN))
+                .then()
+                .onErrorResume(BadJwtException.class, exception -> Mono.empty());
+    }
+
+    private Mono<Void> exercise() {
+        return Mono.usingWhen(Mono.fromSupplier(this::stubFoodClient),
+                foodClient -> Flux.range(0, warmupProperties.iterations())
+                        .flatMap(i -> exerciseOnce(foodClient, i)
+                                .doOnSuccess(done -> exercised.incrementAndGet()), warmupProperties.concurrency())
+                        .then(),
+                foodClient -> Mono.fromRunnable(foodClient::close));
+    }
+
+    private Mono<Void> exerciseOnce(FoodClient foodClient, int iteration) {
+        // Every other ref repeats, so the lookups see both cache misses and hits.
+        var ref = "warmup-" + iteration / 2;
+        var submit = decodeRequest(ref, 1 + iteration % 5)
+                .flatMap(request -> foodClient.lookupFood(request.ref())
+                        .map(food -> OrderService.buildAcceptedOrder(food, request.quantity())))
+                .flatMap(order -> encode(Mono.just(order), jsonEncoder, MediaType.APPLICATION_JSON));
+        var query = iteration < warmupProperties.databaseIterations()
+                ? orderService.getOrderListVersion(WARMUP_USER)
+                        .thenMany(orderService.getOrders(WARMUP_USER, null, PAGE_SIZE + 1))
+                        .then()
+                : Mono.<Void>empty();
+        var list = query
+                .then(iteration % 2 == 0
+                        ? encode(Flux.fromIterable(samplePage), jsonEncoder, MediaType.APPLICATION_JSON)
+                        : encode(Flux.fromIterable(samplePage), smileEncoder, CodecConfig.APPLICATION_SMILE));
+        return Mono.when(submit, list);
+    }
+
+    private Mono<OrderRequest> decodeRequest(String ref, int quantity) {
+        var body = String.format("{\"ref\":\"%s\",\"quantity\":%d}", ref, quantity);
+        return requestDecoder.decodeToMono(
+                Mono.just(DefaultDataBufferFactory.sharedInstance.wrap(body.getBytes(StandardCharsets.UTF_8))),
+                ORDER_REQUEST_TYPE, MediaType.APPLICATION_JSON, Map.of());
+    }
+
+    private static Mono<Void> encode(Publisher<Order> orders, Encoder<Order> encoder, MediaType mediaType) {
+        return encoder.encode(orders, DefaultDataBufferFactory.sharedInstance, ORDER_TYPE, mediaType, Map.of())
+                .doOnNext(DataBufferUtils::release)
+                .then();
+    }
+
+    private FoodClient stubFoodClient() {
+        // Its own registries keep the synthetic lookups out of the food service metrics and
+        // away from the real circuit breaker.
+        var stubWebClient = WebClient.builder()
+                .exchangeFunction(request -> Mono.just(stubFoodResponse(request.url())))
+                .build();
+        return new FoodClient(stubWebClient, clientProperties, CircuitBreakerRegistry.ofDefaults(),
+                BulkheadRegistry.ofDefaults(), new SimpleMeterRegistry());
+    }
+
+    private static ClientResponse stubFoodResponse(URI url) {
+        var refs = UriComponentsBuilder.fromUri(url).build().getQueryParams().getFirst("refs");
+        var body = refs != null
+                ? Arrays.stream(refs.split(",")).map(ApplicationWarmup::stubFoodJson)
+                        .collect(Collectors.joining(",", "[", "]"))
+                : stubFoodJson(url.getPath().substring(url.getPath().lastIndexOf('/') + 1));
+        return ClientResponse.create(HttpStatus.OK)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .body(body)
+                .build();
+    }
+
+    private static Food stubFood(String ref) {
+        return new Food(ref, "Warm-up", "Warm-up", 9.90);
+    }
+
+    private static String stubFoodJson(String ref) {
+        return String.format("{\"ref\":\"%s\",\"description\":\"Warm-up\",\"chef\":\"Warm-up\",\"price\":9.90}", ref);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Encoder<Order> orderEncoder(ServerCodecConfigurer serverCodecConfigurer, MediaType mediaType) {
+        return serverCodecConfigurer.getWriters().stream()
+                .filter(writer -> writer instanceof EncoderHttpMessageWriter && writer.canWrite(ORDER_TYPE, mediaType))
+                .map(writer -> (Encoder<Order>) ((EncoderHttpMessageWriter<?>) writer).getEncoder())
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("No encoder writes orders as " + mediaType));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Decoder<OrderRequest> orderRequestDecoder(ServerCodecConfigurer serverCodecConfigurer) {
+        return serverCodecConfigurer.getReaders().stream()
+                .filter(reader -> reader instanceof DecoderHttpMessageReader
+                        && reader.canRead(ORDER_REQUEST_TYPE, MediaType.APPLICATION_JSON))
+                .map(reader -> (Decoder<OrderRequest>) ((DecoderHttpMessageReader<?>) reader).getDecoder())
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("No decoder reads order requests"));
+    }
+
+    private static String base64Url(String value) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -1,34 +1,247 @@
 package com.restaurant.orderservice.web;
 
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.restaurant.orderservice.config.ClientProperties;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.util.retry.Retry;
 
+import javax.annotation.PreDestroy;
 import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Component
 public class FoodClient {
 
     private static final String FOOD_ROOT_API = "/food/";
+    private static final String FOOD_BULK_API = "/food";
+    static final String FOOD_SERVICE = "food-service";
     private final WebClient webClient;
+    private final AsyncLoadingCache<String, Food> foodCache;
+    private final FoodRequestCoalescer coalescer;
+    private final CircuitBreaker circuitBreaker;
+    private final Bulkhead bulkhead;
+    private final Cache<String, Food> lastKnownFood;
+    private final boolean serveStale;
+    private final HedgeBudget hedgeBudget;
+    private final Duration hedgeDelay;
+    private final Counter retries;
+    private final Counter timeouts;
+    private final Counter notFoundFallbacks;
+    private final Counter timeoutFallbacks;
+    private final Counter errorFallbacks;
+    private final Counter circuitOpenRejections;
+    private final Counter bulkheadFullRejections;
+    private final Counter staleResponses;
+    private final Counter hedgesFired;
+    private final Counter hedgesWon;
+    private final Counter hedgesDenied;
 
-    public FoodClient(WebClient webClient) {
+    public FoodClient(WebClient webClient, ClientProperties clientProperties,
+                      CircuitBreakerRegistry circuitBreakerRegistry, BulkheadRegistry bulkheadRegistry,
+                      MeterRegistry meterRegistry) {
         this.webClient = webClient;
+        this.circuitBreaker = circuitBreakerRegistry.circuitBreaker(FOOD_SERVICE);
+        this.bulkhead = bulkheadRegistry.bulkhead(FOOD_SERVICE);
+        var fallbackProperties = clientProperties.foodFallback();
+        this.serveStale = fallbackProperties.serveStale();
+        this.lastKnownFood = Caffeine.newBuilder()
+                .maximumSize(clientProperties.foodCache().maximumSize())
+                .expireAfterWrite(fallbackProperties.staleTimeToLive())
+                .build();
+        var hedgeProperties = clientProperties.foodHedge();
+        this.hedgeBudget = hedgeProperties.enabled() ? new HedgeBudget(hedgeProperties.maxExtraLoadPercent()) : null;
+        this.hedgeDelay = hedgeProperties.delay();
+        this.retries = Counter.builder("food.lookup.retries")
+                .description("Food lookups retried after a failed request")
+                .register(meterRegistry);
+        this.timeouts = Counter.builder("food.lookup.timeouts")
+                .description("Food service requests that timed out")
+                .register(meterRegistry);
+        this.notFoundFallbacks = fallbackCounter("not_found", meterRegistry);
+        this.timeoutFallbacks = fallbackCounter("timeout", meterRegistry);
+        this.errorFallbacks = fallbackCounter("error", meterRegistry);
+        this.circuitOpenRejections = rejectionCounter("circuit_open", meterRegistry);
+        this.bulkheadFullRejections = rejectionCounter("bulkhead_full", meterRegistry);
+        this.staleResponses = Counter.builder("food.lookup.stale")
+                .description("Food lookups served from last known data while the food service was unavailable")
+                .register(meterRegistry);
+        this.hedgesFired = Counter.builder("food.hedge.fired")
+                .description("Hedge requests sent because the first food request was slow")
+                .register(meterRegistry);
+        this.hedgesWon = Counter.builder("food.hedge.won")
+                .description("Hedge requests that answered before the first food request")
+                .register(meterRegistry);
+        this.hedgesDenied = Counter.builder("food.hedge.denied")
+                .description("Hedge requests not sent because the hedge budget was exhausted")
+                .register(meterRegistry);
+        this.coalescer = clientProperties.foodBatch().enabled()
+                ? new FoodRequestCoalescer(clientProperties.foodBatch(),
+                        clientProperties.foodHttpClient().responseTimeout(), this::fetchFoodsByRefs,
+                        this::fetchFoodByRef, meterRegistry)
+                : null;
+        var cacheProperties = clientProperties.foodCache();
+        // Caffeine serves the stale entry while refreshing it in the background and
+        // shares a single in-flight load between concurrent misses for the same ref.
+        this.foodCache = CaffeineCacheMetrics.monitor(meterRegistry, Caffeine.newBuilder()
+                .maximumSize(cacheProperties.maximumSize())
+                .expireAfterWrite(cacheProperties.timeToLive())
+                .refreshAfterWrite(cacheProperties.refreshAfter())
+                .recordStats()
+                .buildAsync((ref, executor) -> loadFood(ref).toFuture()), "food");
     }
 
     public Mono<Food> getFoodByRef(String ref) {
+        return lookupFood(ref)
+                .onErrorResume(Exception.class,
+                        exception -> Mono.empty());
+    }
+
+    // Unlike getFoodByRef, failed lookups are signalled as errors so that callers can tell
+    // an unknown ref (empty) from an unavailable food service.
+    public Mono<Food> lookupFood(String ref) {
+        return Mono.fromFuture(foodCache.get(ref))
+                .doOnSuccess(food -> {
+                    if (food == null) {
+                        notFoundFallbacks.increment();
+                    }
+                })
+                .doOnError(exception -> (exception instanceof TimeoutException
+                        ? timeoutFallbacks : errorFallbacks).increment());
+    }
+
+    @PreDestroy
+    void close() {
+        if (coalescer != null) {
+            coalescer.dispose();
+        }
+    }
+
+    private Mono<Food> loadFood(String ref) {
+        return coalescer != null ? coalescer.getFoodByRef(ref) : fetchFoodByRef(ref);
+    }
+
+    private Flux<Food> fetchFoodsByRefs(List<String> refs) {
+        return webClient
+                .get()
+                .uri(uriBuilder -> uriBuilder.path(FOOD_BULK_API)
+                        .queryParam("refs", String.join(",", refs))
+                        .build())
+                .retrieve()
+                .bodyToFlux(Food.class)
+                .timeout(Duration.ofSeconds(3))
+                .doOnError(TimeoutException.class, exception -> timeouts.increment())
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+                .transformDeferred(BulkheadOperator.of(bulkhead))
+                .doOnNext(food -> lastKnownFood.put(food.ref(), food))
+                .doOnError(this::countRejection);
+    }
+
+    private Mono<Food> fetchFoodByRef(String ref) {
+        // Errors are left to propagate so that a failed refresh keeps the stale entry.
+        return Mono.defer(() -> hedgeBudget != null ? requestFoodHedged(ref) : requestFood(ref))
+                .retryWhen(Retry.backoff(3, Duration.ofMillis(100))
+                        .filter(exception -> !(exception instanceof TimeoutException) && !isRejection(exception))
+                        .doBeforeRetry(retrySignal -> retries.increment()))
+                .doOnNext(food -> lastKnownFood.put(ref, food))
+                .doOnError(this::countRejection)
+                .onErrorResume(FoodClient::isRejection, exception -> lastKnownFood(ref, exception));
+    }
+
+    private Mono<Food> requestFoodHedged(String ref) {
+        // The first answer wins and cancels the other request, and a food not found is an
+        // answer too. A failed request leaves the outcome to the other one; an unaffordable
+        // hedge never answers, so if both fail it is the first request's error that counts.
+        hedgeBudget.deposit();
+        var firstError = new AtomicReference<Throwable>();
+        var first = answer(requestFood(ref))
+                .doOnError(firstError::set);
+        var hedge = Mono.delay(hedgeDelay)
+                .flatMap(tick -> {
+                    if (!hedgeBudget.tryWithdraw()) {
+                        hedgesDenied.increment();
+                        return Mono.<Optional<Food>>empty();
+                    }
+                    hedgesFired.increment();
+                    return answer(requestFood(ref))
+                            .doOnNext(food -> hedgesWon.increment());
+                });
+        return Mono.firstWithValue(first, hedge)
+                .onErrorMap(exception -> firstError.get() != null ? firstError.get() : exception)
+                .flatMap(Mono::justOrEmpty);
+    }
+
+    private static Mono<Optional<Food>> answer(Mono<Food> request) {
+        return request.map(Optional::of).defaultIfEmpty(Optional.empty());
+    }
+
+    private Mono<Food> requestFood(String ref) {
         return webClient
                 .get()
                 .uri(FOOD_ROOT_API + ref)
                 .retrieve()
                 .bodyToMono(Food.class)
-                .timeout(Duration.ofSeconds(3), Mono.empty())
+                .timeout(Duration.ofSeconds(3))
+                .doOnError(TimeoutException.class, exception -> timeouts.increment())
                 .onErrorResume(WebClientResponseException.NotFound.class,
                         exception -> Mono.empty())
-                .retryWhen(Retry.backoff(3, Duration.ofMillis(100)))
-                .onErrorResume(Exception.class,
-                        exception -> Mono.empty());
+                // The bulkhead rejects before the breaker is asked, so a full bulkhead never
+                // counts as a call against the food service.
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+                .transformDeferred(BulkheadOperator.of(bulkhead));
+    }
+
+    private Mono<Food> lastKnownFood(String ref, Throwable rejection) {
+        var food = serveStale ? lastKnownFood.getIfPresent(ref) : null;
+        if (food == null) {
+            return Mono.error(rejection);
+        }
+        staleResponses.increment();
+        return Mono.just(food);
+    }
+
+    private void countRejection(Throwable exception) {
+        if (exception instanceof CallNotPermittedException) {
+            circuitOpenRejections.increment();
+        } else if (exception instanceof BulkheadFullException) {
+            bulkheadFullRejections.increment();
+        }
+    }
+
+    private static boolean isRejection(Throwable exception) {
+        return exception instanceof CallNotPermittedException || exception instanceof BulkheadFullException;
+    }
+
+    private static Counter rejectionCounter(String reason, MeterRegistry meterRegistry) {
+        return Counter.builder("food.lookup.rejected")
+                .description("Food service calls rejected without being attempted")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    private static Counter fallbackCounter(String reason, MeterRegistry meterRegistry) {
+        return Counter.builder("food.lookup.fallbacks")
+                .description("Food lookups that resolved to no food")
+                .tag("reason", reason)
+                .register(meterRegistry);
     }
 }
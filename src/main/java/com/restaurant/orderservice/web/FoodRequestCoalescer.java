@@ -0,0 +1,159 @@
+package com.restaurant.orderservice.web;
+
+import com.restaurant.orderservice.config.ClientProperties;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.concurrent.Queues;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+class FoodRequestCoalescer {
+
+    private static final Logger log = LoggerFactory.getLogger(FoodRequestCoalescer.class);
+
+    private final Function<List<String>, Flux<Food>> bulkLookup;
+    private final Function<String, Mono<Food>> singleLookup;
+    private final ClientProperties.FoodBatch batchProperties;
+    private final Duration timeout;
+    private final AtomicBoolean bulkAvailable = new AtomicBoolean(true);
+    private final AtomicInteger pending = new AtomicInteger();
+    private final DistributionSummary batchSize;
+    private final Timer batchWait;
+    private volatile Sinks.Many<PendingRequest> requests;
+    private volatile Disposable subscription;
+    private volatile boolean disposed;
+
+    // A lookup that is not resolved within timeout fails with a TimeoutException, like a
+    // single request to the food service would.
+    FoodRequestCoalescer(ClientProperties.FoodBatch batchProperties, Duration timeout,
+                         Function<List<String>, Flux<Food>> bulkLookup,
+                         Function<String, Mono<Food>> singleLookup,
+                         MeterRegistry meterRegistry) {
+        this.batchProperties = batchProperties;
+        this.timeout = timeout;
+        this.bulkLookup = bulkLookup;
+        this.singleLookup = singleLookup;
+        this.batchSize = DistributionSummary.builder("food.batch.size")
+                .description("Number of food lookups resolved together")
+                .register(meterRegistry);
+        this.batchWait = Timer.builder("food.batch.wait")
+                .description("Time a food lookup waits for its batch to be dispatched")
+                .register(meterRegistry);
+        start();
+    }
+
+    private void start() {
+        // bufferTimeout fails when a batch is due and nothing requested it, so batches are
+        // resolved with unbounded concurrency; the food service connection pool and bulkhead
+        // bound the requests they make. Should the pipeline fail anyway, a new one takes over
+        // and the lookups queued in the old one time out.
+        Sinks.Many<PendingRequest> sink = Sinks.many().unicast()
+                .onBackpressureBuffer(Queues.<PendingRequest>get(batchProperties.maxPending()).get());
+        requests = sink;
+        subscription = sink.asFlux()
+                .bufferTimeout(batchProperties.maxSize(), batchProperties.window())
+                .flatMap(this::resolve, Integer.MAX_VALUE)
+                .subscribe(null, exception -> {
+                    log.error("Food lookup batching failed, restarting it", exception);
+                    if (!disposed) {
+                        start();
+                    }
+                });
+    }
+
+    Mono<Food> getFoodByRef(String ref) {
+        return Mono.defer(() -> {
+            // bufferTimeout takes every queued lookup into its batch at once, so the lookups
+            // still waiting for an answer are what is bounded.
+            if (pending.incrementAndGet() > batchProperties.maxPending()) {
+                pending.decrementAndGet();
+                return Mono.error(new IllegalStateException("Too many food lookups waiting for a batch"));
+            }
+            var pendingRequest = new PendingRequest(ref, Sinks.one(), System.nanoTime());
+            Sinks.EmitResult emitResult;
+            while ((emitResult = requests.tryEmitNext(pendingRequest)) == Sinks.EmitResult.FAIL_NON_SERIALIZED) {
+                Thread.onSpinWait();
+            }
+            if (emitResult.isFailure()) {
+                pending.decrementAndGet();
+                return Mono.error(new IllegalStateException("Food lookup not queued for a batch: " + emitResult));
+            }
+            return pendingRequest.result().asMono()
+                    .timeout(timeout)
+                    .doFinally(signal -> pending.decrementAndGet());
+        });
+    }
+
+    void dispose() {
+        disposed = true;
+        subscription.dispose();
+    }
+
+    private Mono<Void> resolve(List<PendingRequest> batch) {
+        var dispatchedAt = System.nanoTime();
+        batch.forEach(pendingRequest ->
+                batchWait.record(dispatchedAt - pendingRequest.enqueuedAt(), TimeUnit.NANOSECONDS));
+        var pendingByRef = batch.stream()
+                .collect(Collectors.groupingBy(PendingRequest::ref));
+        batchSize.record(pendingByRef.size());
+
+        if (!bulkAvailable.get()) {
+            return resolveEach(pendingByRef);
+        }
+        return bulkLookup.apply(List.copyOf(pendingByRef.keySet()))
+                .collectMap(Food::ref)
+                .doOnNext(foods -> pendingByRef.forEach((ref, pendingRequests) ->
+                        complete(pendingRequests, foods.get(ref))))
+                .then()
+                .onErrorResume(exception -> {
+                    if (isBulkUnsupported(exception) && bulkAvailable.compareAndSet(true, false)) {
+                        log.warn("Bulk food endpoint not available, falling back to per-ref lookups");
+                    }
+                    return resolveEach(pendingByRef);
+                });
+    }
+
+    private Mono<Void> resolveEach(Map<String, List<PendingRequest>> pendingByRef) {
+        return Flux.fromIterable(pendingByRef.entrySet())
+                .flatMap(entry -> singleLookup.apply(entry.getKey())
+                        .doOnSuccess(food -> complete(entry.getValue(), food))
+                        .doOnError(exception -> entry.getValue().forEach(pendingRequest ->
+                                pendingRequest.result().tryEmitError(exception)))
+                        .onErrorResume(exception -> Mono.empty()))
+                .then();
+    }
+
+    private static void complete(List<PendingRequest> pendingRequests, Food food) {
+        pendingRequests.forEach(pendingRequest -> {
+            if (food == null) {
+                pendingRequest.result().tryEmitEmpty();
+            } else {
+                pendingRequest.result().tryEmitValue(food);
+            }
+        });
+    }
+
+    private static boolean isBulkUnsupported(Throwable exception) {
+        return exception instanceof WebClientResponseException.NotFound
+                || exception instanceof WebClientResponseException.MethodNotAllowed
+                || exception instanceof WebClientResponseException.NotImplemented;
+    }
+
+    private record PendingRequest(String ref, Sinks.One<Food> result, long enqueuedAt) {
+    }
+}
@@ -0,0 +1,34 @@
+package com.restaurant.orderservice.web;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Token bucket in thousandths of a hedge: every primary request deposits its share of the
+// allowed extra load and every hedge withdraws a whole token, so hedges stay within the
+// configured percentage of traffic while still allowing a short burst.
+class HedgeBudget {
+
+    private static final long TOKEN = 1000;
+    private static final long MAX_BURST = 10 * TOKEN;
+
+    private final long depositPerRequest;
+    private final AtomicLong balance = new AtomicLong();
+
+    HedgeBudget(int maxExtraLoadPercent) {
+        this.depositPerRequest = TOKEN * maxExtraLoadPercent / 100;
+    }
+
+    void deposit() {
+        balance.updateAndGet(current -> Math.min(MAX_BURST, current + depositPerRequest));
+    }
+
+    boolean tryWithdraw() {
+        var current = balance.get();
+        while (current >= TOKEN) {
+            if (balance.compareAndSet(current, current - TOKEN)) {
+                return true;
+            }
+            current = balance.get();
+        }
+        return false;
+    }
+}
@@ -0,0 +1,19 @@
+package com.restaurant.orderservice.web;
+
+import java.time.Instant;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+@Table(name = "order_idempotency")
+public record IdempotencyRecord(
+        @Id
+        Long id,
+
+        String userId,
+        String idempotencyKey,
+        String requestFingerprint,
+        String response,
+        Instant createdDate
+) {
+}
@@ -0,0 +1,36 @@
+package com.restaurant.orderservice.web;
+
+import reactor.core.publisher.Mono;
+
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+
+public interface IdempotencyRecordRepository extends ReactiveCrudRepository<IdempotencyRecord, Long> {
+
+    // A key without a response is normally claimed by a transaction still in flight, which
+    // this insert waits for. One older than abandonedAfterSeconds was left behind and is
+    // claimed again.
+    @Query("""
+            INSERT INTO order_idempotency (user_id, idempotency_key, request_fingerprint, created_date)
+            VALUES (:userId, :idempotencyKey, :requestFingerprint, now())
+            ON CONFLICT (user_id, idempotency_key) DO UPDATE
+                SET request_fingerprint = excluded.request_fingerprint,
+                    created_date        = excluded.created_date
+                WHERE order_idempotency.response IS NULL
+                  AND order_idempotency.created_date < now() - make_interval(secs => :abandonedAfterSeconds)
+            RETURNING *
+            """)
+    Mono<IdempotencyRecord> claim(String userId, String idempotencyKey, String requestFingerprint,
+                                  double abandonedAfterSeconds);
+
+    @Modifying
+    @Query("UPDATE order_idempotency SET response = :response WHERE id = :id")
+    Mono<Integer> complete(Long id, String response);
+
+    @Modifying
+    @Query("DELETE FROM order_idempotency WHERE created_date < now() - make_interval(secs => :retentionSeconds)")
+    Mono<Integer> deleteOlderThan(double retentionSeconds);
+
+    Mono<IdempotencyRecord> findByUserIdAndIdempotencyKey(String userId, String idempotencyKey);
+}
@@ -0,0 +1,178 @@
+package com.restaurant.orderservice.web;
+
+import java.time.Duration;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+import javax.annotation.PreDestroy;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.restaurant.orderservice.config.IdempotencyProperties;
+import com.restaurant.orderservice.domain.Order;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+@Service
+public class IdempotencyService {
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyService.class);
+
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final ObjectMapper objectMapper;
+    private final IdempotencyProperties idempotencyProperties;
+    private final AsyncCache<ResponseKey, StoredResponse> responses;
+    private Disposable sweeper;
+
+    public IdempotencyService(IdempotencyRecordRepository idempotencyRecordRepository, ObjectMapper objectMapper,
+                              IdempotencyProperties idempotencyProperties, MeterRegistry meterRegistry) {
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.objectMapper = objectMapper;
+        this.idempotencyProperties = idempotencyProperties;
+        this.responses = CaffeineCacheMetrics.monitor(meterRegistry, Caffeine.newBuilder()
+                .maximumSize(idempotencyProperties.cacheSize())
+                .expireAfterWrite(idempotencyProperties.cacheTtl())
+                .recordStats()
+                .buildAsync(), "idempotency");
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        sweeper = Flux.interval(Duration.ZERO, idempotencyProperties.sweepInterval())
+                .onBackpressureDrop()
+                .concatMap(tick -> sweep()
+                        .onErrorResume(exception -> {
+                            log.warn("Failed to delete expired idempotency keys", exception);
+                            return Mono.empty();
+                        }), 1)
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (sweeper != null) {
+            sweeper.dispose();
+        }
+    }
+
+    public Mono<Integer> sweep() {
+        return idempotencyRecordRepository.deleteOlderThan(seconds(idempotencyProperties.retention()))
+                .doOnNext(deleted -> {
+                    if (deleted > 0) {
+                        log.info("Deleted {} expired idempotency keys", deleted);
+                    }
+                });
+    }
+
+    public Mono<Order> submitOnce(String userId, String idempotencyKey, OrderRequest orderRequest,
+                                  Function<UnaryOperator<Mono<Order>>, Mono<Order>> submission) {
+        var fingerprint = orderRequest.ref() + ":" + orderRequest.quantity();
+        // Duplicates arriving at this instance share the first request's future; the
+        // database claim makes the key unique across instances. The future is subscribed
+        // outside this pipeline, so it carries the request's context over explicitly, or
+        // the auditor would not see the authenticated user.
+        return Mono.deferContextual(context -> {
+                    var responseKey = new ResponseKey(userId, idempotencyKey);
+                    var response = responses.get(responseKey, (key, executor) ->
+                            claimOrReplay(userId, idempotencyKey, fingerprint, submission)
+                                    .contextWrite(context)
+                                    .toFuture());
+                    return Mono.fromFuture(response)
+                            .doOnError(exception -> responses.asMap().remove(responseKey, response));
+                })
+                .map(storedResponse -> {
+                    if (!storedResponse.requestFingerprint().equals(fingerprint)) {
+                        throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
+                                "The Idempotency-Key was already used for a different order.");
+                    }
+                    return storedResponse.order();
+                });
+    }
+
+    // A completed key is replayed before the submission runs, so a retry does not look up
+    // the food again. Otherwise the key is claimed, the order saved and the response stored
+    // in the order's transaction, so a failure anywhere, or a pod dying, releases the key
+    // with the order.
+    private Mono<StoredResponse> claimOrReplay(String userId, String idempotencyKey, String fingerprint,
+                                               Function<UnaryOperator<Mono<Order>>, Mono<Order>> submission) {
+        var abandonedAfter = seconds(idempotencyProperties.inFlightTimeout());
+        return idempotencyRecordRepository.findByUserIdAndIdempotencyKey(userId, idempotencyKey)
+                .filter(idempotencyRecord -> idempotencyRecord.response() != null)
+                .map(this::storedResponse)
+                .switchIfEmpty(Mono.defer(() -> submission.apply(save -> idempotencyRecordRepository
+                                .claim(userId, idempotencyKey, fingerprint, abandonedAfter)
+                                .switchIfEmpty(Mono.error(KeyClaimedException::new))
+                                .flatMap(claimed -> save
+                                        .flatMap(order -> idempotencyRecordRepository.complete(claimed.id(), serialize(order))
+                                                .thenReturn(order))))
+                        .map(order -> new StoredResponse(fingerprint, order))
+                        .onErrorResume(KeyClaimedException.class,
+                                exception -> awaitStoredResponse(userId, idempotencyKey))));
+    }
+
+    private Mono<StoredResponse> awaitStoredResponse(String userId, String idempotencyKey) {
+        var maxPolls = idempotencyProperties.inFlightTimeout().toMillis()
+                / Math.max(1, idempotencyProperties.pollInterval().toMillis());
+        log.info("Waiting for in-flight request with the same Idempotency-Key");
+        return idempotencyRecordRepository.findByUserIdAndIdempotencyKey(userId, idempotencyKey)
+                .filter(idempotencyRecord -> idempotencyRecord.response() != null)
+                .repeatWhenEmpty((int) maxPolls, polls -> polls.delayElements(idempotencyProperties.pollInterval()))
+                .onErrorMap(IllegalStateException.class, exception ->
+                        new ResponseStatusException(HttpStatus.CONFLICT,
+                                "A request with the same Idempotency-Key is still in progress."))
+                .map(this::storedResponse);
+    }
+
+    private StoredResponse storedResponse(IdempotencyRecord idempotencyRecord) {
+        return new StoredResponse(idempotencyRecord.requestFingerprint(), deserialize(idempotencyRecord.response()));
+    }
+
+    private String serialize(Order order) {
+        try {
+            return objectMapper.writeValueAsString(order);
+        } catch (JsonProcessingException exception) {
+            throw new IllegalStateException("Cannot serialize order " + order.id(), exception);
+        }
+    }
+
+    private Order deserialize(String response) {
+        try {
+            return objectMapper.readValue(response, Order.class);
+        } catch (JsonProcessingException exception) {
+            throw new IllegalStateException("Cannot deserialize stored order response", exception);
+        }
+    }
+
+    private static double seconds(Duration duration) {
+        return duration.toMillis() / 1000.0;
+    }
+
+    private record ResponseKey(String userId, String idempotencyKey) {
+    }
+
+    private record StoredResponse(String requestFingerprint, Order order) {
+    }
+
+    // Rolls back the order's transaction when the key belongs to another request.
+    private static class KeyClaimedException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        KeyClaimedException() {
+            super("Idempotency-Key already claimed", null, false, false);
+        }
+    }
+}
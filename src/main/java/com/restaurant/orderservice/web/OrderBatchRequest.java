@@ -0,0 +1,15 @@
+package com.restaurant.orderservice.web;
+
+import java.util.List;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+
+public record OrderBatchRequest(
+        @NotEmpty(message = "The batch must contain at least 1 order.")
+        @Size(max = 50, message = "The batch cannot contain more than 50 orders.")
+        List<@NotNull @Valid OrderRequest> orders
+) {
+}
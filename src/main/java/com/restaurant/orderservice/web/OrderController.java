@@ -1,43 +1,179 @@
 package com.restaurant.orderservice.web;
 
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
 import javax.validation.Valid;
 
+import com.restaurant.orderservice.config.CodecConfig;
+import com.restaurant.orderservice.config.OrderEventsProperties;
 import com.restaurant.orderservice.domain.Order;
+import com.restaurant.orderservice.domain.OrderCursor;
+import com.restaurant.orderservice.domain.OrderListVersion;
 import com.restaurant.orderservice.domain.OrderService;
+import com.restaurant.orderservice.domain.OrderStatusHub;
+import com.restaurant.orderservice.domain.OrderSummary;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
 
 @RestController
 @RequestMapping("orders")
 public class OrderController {
 
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 200;
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+
     private final OrderService orderService;
+    private final IdempotencyService idempotencyService;
+    private final OrderStatusHub orderStatusHub;
+    private final OrderEventsProperties orderEventsProperties;
     private static final Logger log = LoggerFactory.getLogger(OrderController.class);
 
-    public OrderController(OrderService orderService) {
+    public OrderController(OrderService orderService, IdempotencyService idempotencyService,
+                           OrderStatusHub orderStatusHub, OrderEventsProperties orderEventsProperties) {
         this.orderService = orderService;
+        this.idempotencyService = idempotencyService;
+        this.orderStatusHub = orderStatusHub;
+        this.orderEventsProperties = orderEventsProperties;
+    }
+
+    @GetMapping(produces = {MediaType.APPLICATION_JSON_VALUE, CodecConfig.APPLICATION_SMILE_VALUE})
+    public Mono<ResponseEntity<List<Order>>> getAllOrders(@AuthenticationPrincipal Jwt jwt,
+                                                          @RequestParam(required = false) String after,
+                                                          @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int size,
+                                                          ServerWebExchange exchange) {
+        log.info("Fetching orders page");
+        var pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        var cursor = parseCursor(after);
+        // Unchanged lists are answered from the aggregate alone, without reading any order.
+        return orderService.getOrderListVersion(jwt.getSubject())
+                .flatMap(version -> {
+                    var validators = validators(version);
+                    if (isNotModified(exchange, validators)) {
+                        return Mono.just(ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                                .headers(validators)
+                                .<List<Order>>build());
+                    }
+                    // One extra row tells us whether there is a next page without a count query.
+                    return orderService.getOrders(jwt.getSubject(), cursor, pageSize + 1, version)
+                            .collectList()
+                            .map(orders -> {
+                                var response = ResponseEntity.ok().headers(validators);
+                                if (orders.size() <= pageSize) {
+                                    return response.body(orders);
+                                }
+                                var page = orders.subList(0, pageSize);
+                                var next = OrderCursor.of(page.get(pageSize - 1)).encode();
+                                return response
+                                        .header(HttpHeaders.LINK,
+                                                "</orders?after=" + next + "&size=" + pageSize + ">; rel=\"next\"")
+                                        .body(page);
+                            });
+                });
     }
 
-    @GetMapping
-    public Flux<Order> getAllOrders(@AuthenticationPrincipal Jwt jwt) {
-        log.info("Fetching all orders");
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Order> streamAllOrders(@AuthenticationPrincipal Jwt jwt) {
+        log.info("Streaming all orders");
         return orderService.getAllOrders(jwt.getSubject());
     }
 
+    @GetMapping("summary")
+    public Mono<OrderSummary> getOrderSummary(@AuthenticationPrincipal Jwt jwt) {
+        log.info("Fetching order summary");
+        return orderService.getSummary(jwt.getSubject());
+    }
+
+    @GetMapping(path = "events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Order>> streamOrderEvents(@AuthenticationPrincipal Jwt jwt) {
+        log.info("Streaming order status changes");
+        // Heartbeats keep idle connections open through proxies and stop once the hub
+        // completes the stream, e.g. after evicting a slow subscriber.
+        return orderStatusHub.subscribe(jwt.getSubject())
+                .publish(orders -> Flux.merge(
+                        orders.map(order -> ServerSentEvent.builder(order)
+                                .id(String.valueOf(order.id()))
+                                .event(order.status().name())
+                                .build()),
+                        Flux.interval(orderEventsProperties.heartbeatInterval())
+                                .map(tick -> ServerSentEvent.<Order>builder().comment("heartbeat").build())
+                                .takeUntilOther(orders.then())), 1);
+    }
+
     @PostMapping
-    public Mono<Order> submitOrder(@RequestBody @Valid OrderRequest orderRequest) {
+    public Mono<Order> submitOrder(@AuthenticationPrincipal Jwt jwt,
+                                   @RequestHeader(name = "Idempotency-Key", required = false) String idempotencyKey,
+                                   @RequestBody @Valid OrderRequest orderRequest) {
         log.info("Order for {} copies of the food with ref {}", orderRequest.quantity(), orderRequest.ref());
-        return orderService.submitOrder(orderRequest.ref(), orderRequest.quantity());
+        if (idempotencyKey == null) {
+            return orderService.submitOrder(orderRequest.ref(), orderRequest.quantity());
+        }
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "The Idempotency-Key must be between 1 and " + MAX_IDEMPOTENCY_KEY_LENGTH + " characters."));
+        }
+        return idempotencyService.submitOnce(jwt.getSubject(), idempotencyKey, orderRequest,
+                persist -> orderService.submitOrder(orderRequest.ref(), orderRequest.quantity(), persist));
+    }
+
+    @PostMapping("batch")
+    public Flux<Order> submitOrders(@RequestBody @Valid OrderBatchRequest orderBatchRequest) {
+        log.info("Batch of {} orders", orderBatchRequest.orders().size());
+        return orderService.submitOrders(orderBatchRequest.orders());
+    }
+
+    private static HttpHeaders validators(OrderListVersion version) {
+        var headers = new HttpHeaders();
+        // Weak, as the same list is served as JSON or Smile and with or without compression.
+        headers.setETag("W/\"" + version.tag() + "\"");
+        // Last-Modified only has whole seconds, so within the second of the last change a
+        // later change in that same second would still look unmodified; the ETag alone
+        // validates the list until that second is over.
+        if (version.lastModifiedDate() != null && version.lastModifiedDate().truncatedTo(ChronoUnit.SECONDS)
+                .isBefore(Instant.now().truncatedTo(ChronoUnit.SECONDS))) {
+            headers.setLastModified(version.lastModifiedDate());
+        }
+        headers.setVary(List.of(HttpHeaders.ACCEPT));
+        return headers;
+    }
+
+    private static boolean isNotModified(ServerWebExchange exchange, HttpHeaders validators) {
+        if (validators.getLastModified() < 0) {
+            return exchange.checkNotModified(validators.getETag());
+        }
+        return exchange.checkNotModified(validators.getETag(), Instant.ofEpochMilli(validators.getLastModified()));
+    }
+
+    private static OrderCursor parseCursor(String after) {
+        if (after == null) {
+            return null;
+        }
+        try {
+            return OrderCursor.decode(after);
+        } catch (IllegalArgumentException exception) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, exception.getMessage());
+        }
     }
 
 }
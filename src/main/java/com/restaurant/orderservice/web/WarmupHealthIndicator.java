@@ -0,0 +1,29 @@
+package com.restaurant.orderservice.web;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+// Part of the readiness group: out of service while the warm-up runs, up once it has
+// completed or used up its budget. The details report how far it got.
+@Component
+public class WarmupHealthIndicator implements HealthIndicator {
+
+    private final ApplicationWarmup applicationWarmup;
+
+    public WarmupHealthIndicator(ApplicationWarmup applicationWarmup) {
+        this.applicationWarmup = applicationWarmup;
+    }
+
+    @Override
+    public Health health() {
+        var health = applicationWarmup.isFinished() ? Health.up() : Health.outOfService();
+        return health
+                .withDetail("state", applicationWarmup.state())
+                .withDetail("elapsed", applicationWarmup.elapsed().toMillis() + "ms")
+                .withDetail("budget", applicationWarmup.budget().toMillis() + "ms")
+                .withDetail("steps", applicationWarmup.steps())
+                .withDetail("exercises", applicationWarmup.exercised() + "/" + applicationWarmup.iterations())
+                .build();
+    }
+}
@@ -0,0 +1,2 @@
+CREATE INDEX orders_created_by_created_date_id_idx
+    ON orders (created_by, created_date DESC, id DESC);
@@ -0,0 +1,6 @@
+CREATE TABLE order_outbox
+(
+    id           BIGSERIAL PRIMARY KEY NOT NULL,
+    order_id     bigint                NOT NULL,
+    created_date timestamp             NOT NULL
+);
@@ -0,0 +1,12 @@
+CREATE TABLE order_idempotency
+(
+    id                  BIGSERIAL PRIMARY KEY NOT NULL,
+    user_id             varchar(255)          NOT NULL,
+    idempotency_key     varchar(255)          NOT NULL,
+    request_fingerprint varchar(255)          NOT NULL,
+    response            text,
+    created_date        timestamp             NOT NULL
+);
+
+CREATE UNIQUE INDEX order_idempotency_user_id_key_idx
+    ON order_idempotency (user_id, idempotency_key);
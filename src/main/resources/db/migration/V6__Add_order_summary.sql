@@ -0,0 +1,20 @@
+CREATE TABLE order_summary
+(
+    user_id          varchar(255) PRIMARY KEY NOT NULL,
+    order_count      bigint                   NOT NULL,
+    accepted_count   bigint                   NOT NULL,
+    dispatched_count bigint                   NOT NULL,
+    total_spend      numeric(16, 2)           NOT NULL,
+    last_order_date  timestamp                NOT NULL
+);
+
+INSERT INTO order_summary (user_id, order_count, accepted_count, dispatched_count, total_spend, last_order_date)
+SELECT created_by,
+       count(*),
+       count(*) FILTER (WHERE status = 'ACCEPTED'),
+       count(*) FILTER (WHERE status = 'DISPATCHED'),
+       coalesce(sum((food_price * quantity)::numeric(16, 2)), 0),
+       max(created_date)
+FROM orders
+WHERE created_by IS NOT NULL
+GROUP BY created_by;
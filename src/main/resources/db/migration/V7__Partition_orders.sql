@@ -0,0 +1,132 @@
+-- Converts orders into a table range-partitioned by month of created_date. Existing rows
+-- are copied over, so on a large table this migration takes as long as that copy.
+
+ALTER TABLE orders RENAME TO orders_unpartitioned;
+ALTER TABLE orders_unpartitioned RENAME CONSTRAINT orders_pkey TO orders_unpartitioned_pkey;
+ALTER INDEX orders_created_by_created_date_id_idx RENAME TO orders_unpartitioned_created_by_created_date_id_idx;
+
+CREATE TABLE orders
+(
+    id                 bigint       NOT NULL DEFAULT nextval('orders_id_seq'),
+    food_ref           varchar(255) NOT NULL,
+    food_description   varchar(255),
+    food_price         float8,
+    quantity           int          NOT NULL,
+    status             varchar(255) NOT NULL,
+    created_date       timestamp    NOT NULL,
+    last_modified_date timestamp    NOT NULL,
+    version            integer      NOT NULL,
+    created_by         varchar(255),
+    last_modified_by   varchar(255),
+    PRIMARY KEY (id, created_date)
+) PARTITION BY RANGE (created_date);
+
+ALTER SEQUENCE orders_id_seq OWNED BY orders.id;
+
+CREATE INDEX orders_created_by_created_date_id_idx
+    ON orders (created_by, created_date DESC, id DESC);
+
+-- Catches rows outside the monthly partitions, e.g. if maintenance falls behind.
+CREATE TABLE orders_default PARTITION OF orders DEFAULT;
+
+-- Creates the monthly partitions from from_month on, moving any of their rows that
+-- landed in the default partition in the meantime.
+CREATE FUNCTION create_orders_partitions(from_month timestamp, months int) RETURNS int AS
+$$
+DECLARE
+    month_start    timestamp;
+    month_end      timestamp;
+    partition_name text;
+    created        int := 0;
+BEGIN
+    FOR i IN 0..months - 1
+        LOOP
+            month_start := date_trunc('month', from_month) + make_interval(months => i);
+            month_end := month_start + interval '1 month';
+            partition_name := 'orders_' || to_char(month_start, 'YYYY_MM');
+            CONTINUE WHEN to_regclass(partition_name) IS NOT NULL;
+            EXECUTE format('CREATE TABLE %I (LIKE orders INCLUDING DEFAULTS)', partition_name);
+            EXECUTE format('WITH moved AS (DELETE FROM orders_default WHERE created_date >= %L AND created_date < %L RETURNING *) '
+                               || 'INSERT INTO %I SELECT * FROM moved', month_start, month_end, partition_name);
+            EXECUTE format('ALTER TABLE orders ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+                           partition_name, month_start, month_end);
+            created := created + 1;
+        END LOOP;
+    RETURN created;
+END
+$$ LANGUAGE plpgsql;
+
+-- Drops monthly partitions that ended before archive_before and have been emptied by
+-- archival. Dropping briefly locks orders, so it gives up rather than queue behind
+-- long-running queries.
+CREATE FUNCTION drop_archived_orders_partitions(archive_before timestamp) RETURNS int AS
+$$
+DECLARE
+    partition_name text;
+    has_rows       boolean;
+    dropped        int := 0;
+BEGIN
+    SET LOCAL lock_timeout = '1s';
+    FOR partition_name IN
+        SELECT child.relname
+        FROM pg_inherits
+                 JOIN pg_class parent ON parent.oid = pg_inherits.inhparent
+                 JOIN pg_class child ON child.oid = pg_inherits.inhrelid
+        WHERE parent.relname = 'orders'
+          AND child.relname ~ '^orders_\d{4}_\d{2}$'
+        LOOP
+            CONTINUE WHEN to_timestamp(right(partition_name, 7), 'YYYY_MM') + interval '1 month' > archive_before;
+            EXECUTE format('SELECT EXISTS (SELECT 1 FROM %I)', partition_name) INTO has_rows;
+            CONTINUE WHEN has_rows;
+            BEGIN
+                EXECUTE format('DROP TABLE %I', partition_name);
+                dropped := dropped + 1;
+            EXCEPTION
+                WHEN lock_not_available THEN
+                    RAISE NOTICE 'Skipping busy partition %', partition_name;
+            END;
+        END LOOP;
+    RETURN dropped;
+END
+$$ LANGUAGE plpgsql;
+
+DO
+$$
+    DECLARE
+        first_month timestamp := date_trunc('month', coalesce((SELECT min(created_date) FROM orders_unpartitioned),
+                                                              now()::timestamp));
+        past_months int       := (extract(YEAR FROM age(date_trunc('month', now()::timestamp), first_month)) * 12
+            + extract(MONTH FROM age(date_trunc('month', now()::timestamp), first_month)))::int;
+    BEGIN
+        -- Months with existing orders, the current one and the next three.
+        PERFORM create_orders_partitions(first_month, past_months + 4);
+    END
+$$;
+
+INSERT INTO orders (id, food_ref, food_description, food_price, quantity, status, created_date,
+                    last_modified_date, version, created_by, last_modified_by)
+SELECT id, food_ref, food_description, food_price, quantity, status, created_date,
+       last_modified_date, version, created_by, last_modified_by
+FROM orders_unpartitioned;
+
+DROP TABLE orders_unpartitioned;
+
+-- Archived orders are kept as one jsonb document per user and month, together with the
+-- aggregates order_summary needs. A low toast_tuple_target makes Postgres compress all
+-- but the smallest documents.
+CREATE TABLE orders_archive
+(
+    id               BIGSERIAL PRIMARY KEY NOT NULL,
+    created_by       varchar(255),
+    period_start     timestamp             NOT NULL,
+    order_count      int                   NOT NULL,
+    accepted_count   int                   NOT NULL,
+    dispatched_count int                   NOT NULL,
+    total_spend      numeric(16, 2)        NOT NULL,
+    last_order_date  timestamp             NOT NULL,
+    orders           jsonb                 NOT NULL,
+    archived_date    timestamp             NOT NULL
+) WITH (toast_tuple_target = 128);
+
+CREATE INDEX orders_archive_created_by_period_start_idx
+    ON orders_archive (created_by, period_start);
@@ -0,0 +1,144 @@
+-- Shrinks orders rows: status becomes a smallint code and the food description and price,
+-- repeated verbatim by every order of the same food, move into food_snapshot, which rows
+-- reference by id. Every order row is updated and then rewritten, so on a large table this
+-- migration takes about as long as two full copies.
+
+CREATE FUNCTION order_status_code(status_name text) RETURNS smallint AS
+$$
+SELECT CASE status_name
+           WHEN 'ACCEPTED' THEN 0
+           WHEN 'REJECTED' THEN 1
+           WHEN 'DISPATCHED' THEN 2
+           END::smallint
+$$ LANGUAGE sql IMMUTABLE STRICT;
+
+CREATE FUNCTION order_status_name(status_code smallint) RETURNS text AS
+$$
+SELECT (ARRAY ['ACCEPTED', 'REJECTED', 'DISPATCHED'])[status_code + 1]
+$$ LANGUAGE sql IMMUTABLE STRICT;
+
+-- One row per distinct food description, chef and price, addressed by the SHA-256 digest of
+-- those values. Snapshots are shared between orders and never updated or deleted.
+CREATE TABLE food_snapshot
+(
+    id               BIGSERIAL PRIMARY KEY NOT NULL,
+    digest           bytea                 NOT NULL UNIQUE,
+    description      varchar(255),
+    chef             varchar(255),
+    price            float8,
+    food_description varchar(255) GENERATED ALWAYS AS (
+        CASE WHEN chef IS NULL THEN description ELSE description || ' - ' || chef END) STORED
+);
+
+-- Orders keep the "description - chef" text they were accepted with. It is split at its last
+-- " - ", so food_description above reproduces it exactly, and text without one is kept whole
+-- as the description.
+CREATE FUNCTION food_snapshot_id(full_description text, food_price float8) RETURNS bigint AS
+$$
+DECLARE
+    snapshot_description text := coalesce(substring(full_description FROM '^(.*) - '), full_description);
+    snapshot_chef        text := substring(full_description FROM '^.* - (.*)$');
+    snapshot_digest      bytea;
+    snapshot_id          bigint;
+BEGIN
+    IF full_description IS NULL AND food_price IS NULL THEN
+        RETURN NULL;
+    END IF;
+    snapshot_digest := sha256(convert_to(quote_nullable(snapshot_description) || ',' || quote_nullable(snapshot_chef)
+                                             || ',' || quote_nullable(food_price), 'UTF8'));
+    SELECT id INTO snapshot_id FROM food_snapshot WHERE digest = snapshot_digest;
+    IF FOUND THEN
+        RETURN snapshot_id;
+    END IF;
+    INSERT INTO food_snapshot (digest, description, chef, price)
+    VALUES (snapshot_digest, snapshot_description, snapshot_chef, food_price)
+    ON CONFLICT (digest) DO NOTHING
+    RETURNING id INTO snapshot_id;
+    IF snapshot_id IS NULL THEN
+        -- A concurrent transaction inserted the same snapshot first.
+        SELECT id INTO snapshot_id FROM food_snapshot WHERE digest = snapshot_digest;
+    END IF;
+    RETURN snapshot_id;
+END
+$$ LANGUAGE plpgsql;
+
+ALTER TABLE orders
+    ADD COLUMN food_snapshot_id bigint;
+
+UPDATE orders
+SET food_snapshot_id = food_snapshot_id(food_description, food_price)
+WHERE food_description IS NOT NULL
+   OR food_price IS NOT NULL;
+
+-- Changing the type of status rewrites every partition, which also reclaims the space of the
+-- dropped columns and of the row versions left behind by the update above.
+ALTER TABLE orders
+    DROP COLUMN food_description,
+    DROP COLUMN food_price,
+    ALTER COLUMN status TYPE smallint USING order_status_code(status);
+
+ALTER TABLE orders
+    ADD FOREIGN KEY (food_snapshot_id) REFERENCES food_snapshot (id);
+
+-- Orders as the application reads and writes them. Writes go to orders and food_snapshot
+-- through the trigger below; updates check the version they read, as the row is not locked
+-- until then.
+CREATE VIEW order_details AS
+SELECT orders.id,
+       orders.food_ref,
+       food_snapshot.food_description,
+       food_snapshot.price AS food_price,
+       orders.quantity,
+       orders.status,
+       orders.created_date,
+       orders.last_modified_date,
+       orders.version,
+       orders.created_by,
+       orders.last_modified_by
+FROM orders
+         LEFT JOIN food_snapshot ON food_snapshot.id = orders.food_snapshot_id;
+
+CREATE FUNCTION write_order_details() RETURNS trigger AS
+$$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        NEW.id := coalesce(NEW.id, nextval('orders_id_seq'));
+        INSERT INTO orders (id, food_ref, food_snapshot_id, quantity, status, created_date, last_modified_date,
+                            version, created_by, last_modified_by)
+        VALUES (NEW.id, NEW.food_ref, food_snapshot_id(NEW.food_description, NEW.food_price), NEW.quantity,
+                NEW.status, NEW.created_date, NEW.last_modified_date, NEW.version, NEW.created_by,
+                NEW.last_modified_by);
+        RETURN NEW;
+    ELSIF TG_OP = 'UPDATE' THEN
+        UPDATE orders
+        SET food_ref           = NEW.food_ref,
+            food_snapshot_id   = food_snapshot_id(NEW.food_description, NEW.food_price),
+            quantity           = NEW.quantity,
+            status             = NEW.status,
+            created_date       = NEW.created_date,
+            last_modified_date = NEW.last_modified_date,
+            version            = NEW.version,
+            created_by         = NEW.created_by,
+            last_modified_by   = NEW.last_modified_by
+        WHERE id = OLD.id
+          AND created_date = OLD.created_date
+          AND version = OLD.version;
+        IF NOT FOUND THEN
+            RETURN NULL;
+        END IF;
+        RETURN NEW;
+    ELSE
+        DELETE FROM orders WHERE id = OLD.id AND created_date = OLD.created_date;
+        IF NOT FOUND THEN
+            RETURN NULL;
+        END IF;
+        RETURN OLD;
+    END IF;
+END
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER order_details_write
+    INSTEAD OF INSERT OR UPDATE OR DELETE
+    ON order_details
+    FOR EACH ROW
+EXECUTE FUNCTION write_order_details();
@@ -39,11 +39,16 @@ import org.springframework.web.reactive.function.client.WebClient;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.BDDMockito.given;
 
-@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "restaurant.outbox.publisher-confirms=false"
+)
 @Import(TestChannelBinderConfiguration.class)
 @Testcontainers
 class OrderServiceApplicationTests {
 
+    private static final long OUTBOX_RELAY_TIMEOUT = 5000;
+
     private static KeycloakToken johnTokens;
     private static KeycloakToken willTokens;
 
@@ -96,7 +101,7 @@ class OrderServiceApplicationTests {
     void whenGetOrdersThenReturn() throws IOException {
         String foodRef = "1234567893";
         Food food = new Food(foodRef, "desc", "Mr Chef", 9.90);
-        given(foodClient.getFoodByRef(foodRef)).willReturn(Mono.just(food));
+        given(foodClient.lookupFood(foodRef)).willReturn(Mono.just(food));
         OrderRequest orderRequest = new OrderRequest(foodRef, 1);
         Order expectedOrder = webTestClient.post().uri("/orders")
                 .headers(headers -> headers.setBearerAuth(willTokens.accessToken()))
@@ -105,7 +110,7 @@ class OrderServiceApplicationTests {
                 .expectStatus().is2xxSuccessful()
                 .expectBody(Order.class).returnResult().getResponseBody();
         assertThat(expectedOrder).isNotNull();
-        assertThat(objectMapper.readValue(output.receive().getPayload(), OrderAcceptedMessage.class))
+        assertThat(objectMapper.readValue(output.receive(OUTBOX_RELAY_TIMEOUT, "order-accepted").getPayload(), OrderAcceptedMessage.class))
                 .isEqualTo(new OrderAcceptedMessage(expectedOrder.id()));
 
         webTestClient.get().uri("/orders")
@@ -124,7 +129,7 @@ class OrderServiceApplicationTests {
     void whenGetOrdersForAnotherUserThenNotReturned() throws IOException {
         String foodRef = "1234567893";
         Food food = new Food(foodRef, "desc", "Mr Chef", 9.90);
-        given(foodClient.getFoodByRef(foodRef)).willReturn(Mono.just(food));
+        given(foodClient.lookupFood(foodRef)).willReturn(Mono.just(food));
         OrderRequest orderRequest = new OrderRequest(foodRef, 1);
 
         Order orderByWill = webTestClient.post().uri("/orders")
@@ -134,7 +139,7 @@ class OrderServiceApplicationTests {
                 .expectStatus().is2xxSuccessful()
                 .expectBody(Order.class).returnResult().getResponseBody();
         assertThat(orderByWill).isNotNull();
-        assertThat(objectMapper.readValue(output.receive().getPayload(), OrderAcceptedMessage.class))
+        assertThat(objectMapper.readValue(output.receive(OUTBOX_RELAY_TIMEOUT, "order-accepted").getPayload(), OrderAcceptedMessage.class))
                 .isEqualTo(new OrderAcceptedMessage(orderByWill.id()));
 
         Order orderByJohn = webTestClient.post().uri("/orders")
@@ -144,7 +149,7 @@ class OrderServiceApplicationTests {
                 .expectStatus().is2xxSuccessful()
                 .expectBody(Order.class).returnResult().getResponseBody();
         assertThat(orderByJohn).isNotNull();
-        assertThat(objectMapper.readValue(output.receive().getPayload(), OrderAcceptedMessage.class))
+        assertThat(objectMapper.readValue(output.receive(OUTBOX_RELAY_TIMEOUT, "order-accepted").getPayload(), OrderAcceptedMessage.class))
                 .isEqualTo(new OrderAcceptedMessage(orderByJohn.id()));
 
         webTestClient.get().uri("/orders")
@@ -161,11 +166,37 @@ class OrderServiceApplicationTests {
                 });
     }
 
+    @Test
+    void whenPostRequestWithIdempotencyKeyThenOrderReturnedForUser() throws IOException {
+        String foodRef = "1234567895";
+        Food food = new Food(foodRef, "desc", "Mr Chef", 9.90);
+        given(foodClient.lookupFood(foodRef)).willReturn(Mono.just(food));
+        OrderRequest orderRequest = new OrderRequest(foodRef, 2);
+
+        Order createdOrder = webTestClient.post().uri("/orders")
+                .headers(headers -> headers.setBearerAuth(willTokens.accessToken()))
+                .header("Idempotency-Key", "will-order-1")
+                .bodyValue(orderRequest)
+                .exchange()
+                .expectStatus().is2xxSuccessful()
+                .expectBody(Order.class).returnResult().getResponseBody();
+        assertThat(createdOrder).isNotNull();
+        assertThat(objectMapper.readValue(output.receive(OUTBOX_RELAY_TIMEOUT, "order-accepted").getPayload(), OrderAcceptedMessage.class))
+                .isEqualTo(new OrderAcceptedMessage(createdOrder.id()));
+
+        webTestClient.get().uri("/orders")
+                .headers(headers -> headers.setBearerAuth(willTokens.accessToken()))
+                .exchange()
+                .expectStatus().is2xxSuccessful()
+                .expectBodyList(Order.class)
+                .value(orders -> assertThat(orders).extracting(Order::id).contains(createdOrder.id()));
+    }
+
     @Test
     void whenPostRequestAndFoodExistsThenOrderAccepted() throws IOException {
         String foodRef = "1234567899";
         Food food = new Food(foodRef, "desc", "Mr Chef", 9.90);
-        given(foodClient.getFoodByRef(foodRef)).willReturn(Mono.just(food));
+        given(foodClient.lookupFood(foodRef)).willReturn(Mono.just(food));
         OrderRequest orderRequest = new OrderRequest(foodRef, 3);
 
         Order createdOrder = webTestClient.post().uri("/orders")
@@ -182,14 +213,14 @@ class OrderServiceApplicationTests {
         assertThat(createdOrder.foodPrice()).isEqualTo(food.price());
         assertThat(createdOrder.status()).isEqualTo(OrderStatus.ACCEPTED);
 
-        assertThat(objectMapper.readValue(output.receive().getPayload(), OrderAcceptedMessage.class))
+        assertThat(objectMapper.readValue(output.receive(OUTBOX_RELAY_TIMEOUT, "order-accepted").getPayload(), OrderAcceptedMessage.class))
                 .isEqualTo(new OrderAcceptedMessage(createdOrder.id()));
     }
 
     @Test
     void whenPostRequestAndFoodNotExistsThenOrderRejected() {
         String foodRef = "1234567894";
-        given(foodClient.getFoodByRef(foodRef)).willReturn(Mono.empty());
+        given(foodClient.lookupFood(foodRef)).willReturn(Mono.empty());
         OrderRequest orderRequest = new OrderRequest(foodRef, 3);
 
         Order createdOrder = webTestClient.post().uri("/orders")
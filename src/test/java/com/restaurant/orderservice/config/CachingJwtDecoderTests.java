@@ -0,0 +1,183 @@
+package com.restaurant.orderservice.config;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.NimbusReactiveJwtDecoder;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CachingJwtDecoderTests {
+
+    private MockWebServer mockWebServer;
+    private SimpleMeterRegistry meterRegistry;
+    private RSAKey currentKey;
+    private volatile JWKSet published;
+    private final AtomicInteger jwkSetFetches = new AtomicInteger();
+    private final AtomicInteger verifications = new AtomicInteger();
+
+    @BeforeEach
+    void setup() throws IOException, JOSEException {
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.currentKey = new RSAKeyGenerator(2048).keyID("first").generate();
+        this.published = new JWKSet(currentKey.toPublicJWK());
+        this.mockWebServer = new MockWebServer();
+        this.mockWebServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                jwkSetFetches.incrementAndGet();
+                return new MockResponse().addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .setBody(published.toString());
+            }
+        });
+        this.mockWebServer.start();
+    }
+
+    @AfterEach
+    void clean() throws IOException {
+        mockWebServer.shutdown();
+    }
+
+    private ReactiveJwtDecoder decoder(Map<String, String> properties) {
+        var jwtCacheProperties = new Binder(new MapConfigurationPropertySource(properties))
+                .bindOrCreate("restaurant.jwt-cache", JwtCacheProperties.class);
+        var jwkSetRefresher = new JwkSetRefresher(WebClient.create(), mockWebServer.url("/jwks").toString(), null,
+                jwtCacheProperties, meterRegistry);
+        var verifier = NimbusReactiveJwtDecoder.withJwkSource(jwkSetRefresher::keysFor).build();
+        ReactiveJwtDecoder countingVerifier = token -> {
+            verifications.incrementAndGet();
+            return verifier.decode(token);
+        };
+        return new CachingJwtDecoder(countingVerifier, jwtCacheProperties, meterRegistry);
+    }
+
+    private String token(String subject, Instant expiresAt) throws JOSEException {
+        var claims = new JWTClaimsSet.Builder()
+                .subject(subject)
+                .issueTime(new Date())
+                .expirationTime(expiresAt == null ? null : Date.from(expiresAt))
+                .build();
+        var jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(currentKey.getKeyID()).build(), claims);
+        jwt.sign(new RSASSASigner(currentKey));
+        return jwt.serialize();
+    }
+
+    @Test
+    void whenSameTokenDecodedTwiceThenVerifiedOnce() throws JOSEException {
+        var decoder = decoder(Map.of());
+        var token = token("user", Instant.now().plusSeconds(300));
+
+        StepVerifier.create(decoder.decode(token))
+                .assertNext(jwt -> assertThat(jwt.getSubject()).isEqualTo("user"))
+                .verifyComplete();
+        StepVerifier.create(decoder.decode(token))
+                .assertNext(jwt -> assertThat(jwt.getSubject()).isEqualTo("user"))
+                .verifyComplete();
+
+        assertThat(verifications).hasValue(1);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "jwt").tag("result", "hit").functionCounter()
+                .count()).isEqualTo(1);
+        assertThat(meterRegistry.get("security.jwt.verification").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void whenCachedTokenExpiresThenVerifiedAgain() throws JOSEException, InterruptedException {
+        var decoder = decoder(Map.of());
+        var token = token("user", Instant.now().plusSeconds(1));
+
+        decoder.decode(token).block();
+        Thread.sleep(1500);
+        // The verifier still accepts it within its clock skew, but the cache must not serve it.
+        decoder.decode(token).block();
+
+        assertThat(verifications).hasValue(2);
+    }
+
+    @Test
+    void whenTokenHasNoExpiryThenNotCached() throws JOSEException {
+        var decoder = decoder(Map.of());
+        var token = token("user", null);
+
+        decoder.decode(token).block();
+        decoder.decode(token).block();
+
+        assertThat(verifications).hasValue(2);
+    }
+
+    @Test
+    void whenKeyRotatedThenConcurrentTokensShareOneRefresh() throws JOSEException {
+        var decoder = decoder(Map.of("restaurant.jwt-cache.jwks-min-refresh-interval", "0s"));
+        decoder.decode(token("before", Instant.now().plusSeconds(300))).block();
+        this.currentKey = new RSAKeyGenerator(2048).keyID("second").generate();
+        this.published = new JWKSet(currentKey.toPublicJWK());
+
+        var tokens = Flux.just(token("first", Instant.now().plusSeconds(300)),
+                token("second", Instant.now().plusSeconds(300)), token("third", Instant.now().plusSeconds(300)));
+        StepVerifier.create(tokens.flatMap(decoder::decode))
+                .expectNextCount(3)
+                .verifyComplete();
+
+        assertThat(jwkSetFetches).hasValue(2);
+        assertThat(meterRegistry.get("security.jwks.refresh").tag("outcome", "success").counter().count())
+                .isEqualTo(2);
+    }
+
+    @Test
+    void whenUnknownKeyWithinMinRefreshIntervalThenRejectedWithoutFetch() throws JOSEException {
+        var decoder = decoder(Map.of("restaurant.jwt-cache.jwks-min-refresh-interval", "1h"));
+        decoder.decode(token("before", Instant.now().plusSeconds(300))).block();
+        this.currentKey = new RSAKeyGenerator(2048).keyID("unknown").generate();
+
+        StepVerifier.create(decoder.decode(token("user", Instant.now().plusSeconds(300))))
+                .expectError(BadJwtException.class)
+                .verify();
+
+        assertThat(jwkSetFetches).hasValue(1);
+    }
+
+    @Test
+    void whenNoKeysPublishedThenUnknownKeysFetchedOncePerMinRefreshInterval() throws JOSEException {
+        this.published = new JWKSet();
+        var decoder = decoder(Map.of("restaurant.jwt-cache.jwks-min-refresh-interval", "1h"));
+
+        StepVerifier.create(decoder.decode(token("first", Instant.now().plusSeconds(300))))
+                .expectError(BadJwtException.class)
+                .verify();
+        this.currentKey = new RSAKeyGenerator(2048).keyID("made-up").generate();
+        StepVerifier.create(decoder.decode(token("second", Instant.now().plusSeconds(300))))
+                .expectError(BadJwtException.class)
+                .verify();
+
+        assertThat(jwkSetFetches).hasValue(1);
+    }
+}
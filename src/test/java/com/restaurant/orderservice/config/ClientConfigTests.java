@@ -0,0 +1,82 @@
+package com.restaurant.orderservice.config;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.Protocol;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.test.StepVerifier;
+
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ClientConfigTests {
+
+    private MockWebServer mockWebServer;
+    private SimpleMeterRegistry meterRegistry;
+    private ConnectionProvider connectionProvider;
+    private WebClient webClient;
+
+    @BeforeEach
+    void setup() throws IOException {
+        this.mockWebServer = new MockWebServer();
+        this.meterRegistry = new SimpleMeterRegistry();
+    }
+
+    private void startClient(Map<String, String> properties) throws IOException {
+        mockWebServer.start();
+        var source = new MapConfigurationPropertySource(properties);
+        source.put("restaurant.tasty-service-uri", mockWebServer.url("/").uri().toString());
+        var clientProperties = new Binder(source).bind("restaurant", ClientProperties.class).get();
+        var clientConfig = new ClientConfig();
+        this.connectionProvider = clientConfig.foodServiceConnectionProvider(clientProperties, meterRegistry);
+        this.webClient = clientConfig.webClient(clientProperties, WebClient.builder(), connectionProvider,
+                meterRegistry);
+    }
+
+    @AfterEach
+    void clean() throws IOException {
+        connectionProvider.dispose();
+        mockWebServer.shutdown();
+    }
+
+    @Test
+    void whenRequestSentThenPoolInstrumented() throws IOException {
+        startClient(Map.of("restaurant.food-http-client.max-connections", "7"));
+        mockWebServer.enqueue(new MockResponse().setBody("ok"));
+
+        StepVerifier.create(webClient.get().uri("/food/1234567890").retrieve().bodyToMono(String.class))
+                .expectNext("ok")
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+
+        assertThat(meterRegistry.get("food.http.pool.acquire").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("food.http.pool.max").gauge().value()).isEqualTo(7);
+        assertThat(meterRegistry.get("food.http.pool.total").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    void whenH2cEnabledThenRequestsUseHttp2() throws IOException {
+        mockWebServer.setProtocols(List.of(Protocol.H2_PRIOR_KNOWLEDGE));
+        startClient(Map.of("restaurant.food-http-client.h2c", "true"));
+        mockWebServer.enqueue(new MockResponse().setBody("ok"));
+
+        StepVerifier.create(webClient.get().uri("/food/1234567890").retrieve().bodyToMono(String.class))
+                .expectNext("ok")
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+
+        assertThat(mockWebServer.getRequestCount()).isEqualTo(1);
+    }
+}
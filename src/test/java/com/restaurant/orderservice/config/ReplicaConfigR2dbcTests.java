@@ -0,0 +1,105 @@
+package com.restaurant.orderservice.config;
+
+import java.time.Duration;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+import reactor.core.publisher.Mono;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.autoconfigure.data.r2dbc.DataR2dbcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// One database behind two pools, told apart by the application name of their connections.
+@DataR2dbcTest(properties = {
+        "restaurant.replica.enabled=true",
+        "restaurant.replica.max-lag=5s"
+})
+@Import({DataConfig.class, ReplicaConfig.class, ReplicaConfigR2dbcTests.MetricsConfig.class})
+@EnableConfigurationProperties(ReplicaProperties.class)
+@Testcontainers
+class ReplicaConfigR2dbcTests {
+
+    private static final String REPLICA_APPLICATION_NAME = "order-service-replica";
+
+    @Container
+    static PostgreSQLContainer<?> postgresql =
+            new PostgreSQLContainer<>(DockerImageName.parse("postgres:14.4"));
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    @Autowired
+    private ReplicaMonitor replicaMonitor;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @DynamicPropertySource
+    static void postgresqlProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.r2dbc.url", ReplicaConfigR2dbcTests::r2dbcUrl);
+        registry.add("spring.r2dbc.username", postgresql::getUsername);
+        registry.add("spring.r2dbc.password", postgresql::getPassword);
+        registry.add("spring.flyway.url", postgresql::getJdbcUrl);
+        registry.add("restaurant.replica.url", () -> r2dbcUrl() + "?applicationName=" + REPLICA_APPLICATION_NAME);
+    }
+
+    private static String r2dbcUrl() {
+        return String.format("r2dbc:postgresql://%s:%s/%s",
+                postgresql.getHost(),
+                postgresql.getMappedPort(PostgreSQLContainer.POSTGRESQL_PORT),
+                postgresql.getDatabaseName());
+    }
+
+    @Test
+    void whenReplicaAvailableThenOnlyReadOnlyQueriesRoutedToIt() {
+        assertThat(replicaMonitor.check().block(Duration.ofSeconds(10))).isTrue();
+
+        assertThat(applicationName(ReadWriteRoutingConnectionFactory.readOnly(applicationName())))
+                .isEqualTo(REPLICA_APPLICATION_NAME);
+        assertThat(applicationName(applicationName())).isNotEqualTo(REPLICA_APPLICATION_NAME);
+    }
+
+    @Test
+    void whenReplicaLagsThenReadOnlyQueriesFallBackToPrimary() {
+        var fallbacks = meterRegistry.get("r2dbc.replica.fallback").tag("reason", "unavailable").counter().count();
+        replicaMonitor.recordLag(Duration.ofMinutes(1));
+
+        assertThat(applicationName(ReadWriteRoutingConnectionFactory.readOnly(applicationName())))
+                .isNotEqualTo(REPLICA_APPLICATION_NAME);
+        assertThat(meterRegistry.get("r2dbc.replica.fallback").tag("reason", "unavailable").counter().count())
+                .isEqualTo(fallbacks + 1);
+    }
+
+    private Mono<String> applicationName() {
+        return databaseClient.sql("SELECT current_setting('application_name')")
+                .map(row -> row.get(0, String.class))
+                .one();
+    }
+
+    private static String applicationName(Mono<String> query) {
+        return query.block(Duration.ofSeconds(10));
+    }
+
+    @TestConfiguration
+    static class MetricsConfig {
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.restaurant.orderservice.domain;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+
+import com.restaurant.orderservice.config.DataConfig;
+import com.restaurant.orderservice.config.OrderArchiveProperties;
+import com.restaurant.orderservice.config.OrderSummaryProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.autoconfigure.data.r2dbc.DataR2dbcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataR2dbcTest(properties = {
+        "restaurant.order-archive.enabled=false",
+        "restaurant.order-archive.archive-after=365d",
+        "restaurant.order-archive.batch-size=2",
+        "restaurant.order-archive.batch-pause=0s"
+})
+@Import({DataConfig.class, OrderArchiver.class, OrderSummaryRebuilder.class, OrderArchiverR2dbcTests.MetricsConfig.class})
+@EnableConfigurationProperties({OrderArchiveProperties.class, OrderSummaryProperties.class})
+@Testcontainers
+class OrderArchiverR2dbcTests {
+
+    private static final DateTimeFormatter PARTITION_SUFFIX =
+            DateTimeFormatter.ofPattern("yyyy_MM").withZone(ZoneOffset.UTC);
+
+    @Container
+    static PostgreSQLContainer<?> postgresql =
+            new PostgreSQLContainer<>(DockerImageName.parse("postgres:14.4"));
+
+    @Autowired
+    private OrderArchiver orderArchiver;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private OrderSummaryRepository summaryRepository;
+
+    @Autowired
+    private OrderSummaryRebuilder summaryRebuilder;
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    @DynamicPropertySource
+    static void postgresqlProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.r2dbc.url", OrderArchiverR2dbcTests::r2dbcUrl);
+        registry.add("spring.r2dbc.username", postgresql::getUsername);
+        registry.add("spring.r2dbc.password", postgresql::getPassword);
+        registry.add("spring.flyway.url", postgresql::getJdbcUrl);
+    }
+
+    private static String r2dbcUrl() {
+        return String.format("r2dbc:postgresql://%s:%s/%s",
+                postgresql.getHost(),
+                postgresql.getMappedPort(PostgreSQLContainer.POSTGRESQL_PORT),
+                postgresql.getDatabaseName());
+    }
+
+    @Test
+    void whenOrdersOlderThanArchiveAgeThenMovedToArchiveAndStillSummarized() {
+        var longAgo = Instant.now().minus(400, ChronoUnit.DAYS);
+        insertOrder("erin", OrderStatus.ACCEPTED, longAgo);
+        insertOrder("erin", OrderStatus.DISPATCHED, longAgo);
+        insertOrder("erin", OrderStatus.DISPATCHED, longAgo.plusSeconds(1));
+        var recentOrderId = insertOrder("erin", OrderStatus.ACCEPTED, Instant.now());
+
+        assertThat(orderArchiver.archive().block(Duration.ofSeconds(10))).isEqualTo(3);
+
+        assertThat(orderRepository.findAllByCreatedBy("erin").collectList().block())
+                .extracting(Order::id).containsExactly(recentOrderId);
+        var archived = databaseClient.sql("""
+                        SELECT sum(order_count) AS orders, sum(jsonb_array_length(orders)) AS documents
+                        FROM orders_archive WHERE created_by = 'erin'""")
+                .map(row -> new long[]{row.get("orders", Long.class), row.get("documents", Long.class)})
+                .one().block();
+        assertThat(archived).containsExactly(3, 3);
+
+        summaryRebuilder.rebuild().block(Duration.ofSeconds(10));
+        var summary = summaryRepository.findById("erin").block();
+        assertThat(summary.orderCount()).isEqualTo(4);
+        assertThat(summary.acceptedCount()).isEqualTo(2);
+        assertThat(summary.dispatchedCount()).isEqualTo(2);
+    }
+
+    @Test
+    void whenPartitionsMaintainedThenFutureOnesCreatedAndArchivedOnesDropped() {
+        var longAgo = Instant.now().minus(500, ChronoUnit.DAYS);
+        insertOrder("frank", OrderStatus.ACCEPTED, longAgo);
+        // The order first lands in the default partition and moves when its month gets one.
+        databaseClient.sql("SELECT create_orders_partitions(CAST(:month AS timestamp), 1)")
+                .bind("month", longAgo)
+                .then().block();
+        var archivedPartition = "orders_" + PARTITION_SUFFIX.format(longAgo);
+        assertThat(countOrders(archivedPartition)).isEqualTo(1);
+
+        orderArchiver.createPartitions().block(Duration.ofSeconds(10));
+        orderArchiver.archive().block(Duration.ofSeconds(10));
+        orderArchiver.dropArchivedPartitions().block(Duration.ofSeconds(10));
+
+        var futurePartition = "orders_" + PARTITION_SUFFIX.format(Instant.now().atZone(ZoneOffset.UTC).plusMonths(3));
+        assertThat(partitionExists(futurePartition)).isTrue();
+        assertThat(partitionExists(archivedPartition)).isFalse();
+    }
+
+    @Test
+    void whenArchivalDisabledThenMaintenanceOnlyCreatesPartitions() {
+        var longAgo = Instant.now().minus(600, ChronoUnit.DAYS);
+        var oldOrderId = insertOrder("grace", OrderStatus.ACCEPTED, longAgo);
+
+        orderArchiver.maintain().block(Duration.ofSeconds(10));
+
+        var futurePartition = "orders_" + PARTITION_SUFFIX.format(Instant.now().atZone(ZoneOffset.UTC).plusMonths(3));
+        assertThat(partitionExists(futurePartition)).isTrue();
+        assertThat(orderRepository.findAllByCreatedBy("grace").collectList().block())
+                .extracting(Order::id).containsExactly(oldOrderId);
+
+        // Not to be archived by the other tests.
+        orderRepository.deleteById(oldOrderId).block();
+    }
+
+    private Long insertOrder(String createdBy, OrderStatus status, Instant createdDate) {
+        return databaseClient.sql("""
+                        INSERT INTO order_details (food_ref, food_description, food_price, quantity, status,
+                                                   created_date, last_modified_date, version, created_by,
+                                                   last_modified_by)
+                        VALUES ('1234567890', 'desc - Mr Chef', 9.90, 2, :status, :createdDate, :createdDate, 1,
+                                :createdBy, :createdBy)
+                        RETURNING id""")
+                .bind("status", status.code())
+                .bind("createdDate", createdDate)
+                .bind("createdBy", createdBy)
+                .map(row -> row.get("id", Long.class))
+                .one().block();
+    }
+
+    private long countOrders(String partition) {
+        return databaseClient.sql("SELECT count(*) FROM " + partition)
+                .map(row -> row.get(0, Long.class))
+                .one().block();
+    }
+
+    private boolean partitionExists(String partition) {
+        return databaseClient.sql("SELECT to_regclass(:partition) IS NOT NULL")
+                .bind("partition", partition)
+                .map(row -> row.get(0, Boolean.class))
+                .one().block();
+    }
+
+    @TestConfiguration
+    static class MetricsConfig {
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+}
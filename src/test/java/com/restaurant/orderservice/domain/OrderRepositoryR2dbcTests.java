@@ -1,6 +1,8 @@
 package com.restaurant.orderservice.domain;
 
 import com.restaurant.orderservice.config.DataConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.testcontainers.containers.PostgreSQLContainer;
@@ -10,14 +12,21 @@ import org.testcontainers.utility.DockerImageName;
 import reactor.test.StepVerifier;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.data.r2dbc.DataR2dbcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Import;
+import org.springframework.r2dbc.core.DatabaseClient;
 import org.springframework.test.context.DynamicPropertyRegistry;
 import org.springframework.test.context.DynamicPropertySource;
 
+import java.util.List;
 import java.util.Objects;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
 @DataR2dbcTest
-@Import(DataConfig.class)
+@Import({DataConfig.class, OrderRepositoryR2dbcTests.MetricsConfig.class})
 @Testcontainers
 class OrderRepositoryR2dbcTests {
     @Container
@@ -25,6 +34,8 @@ class OrderRepositoryR2dbcTests {
             new PostgreSQLContainer<>(DockerImageName.parse("postgres:14.4"));
     @Autowired
     private OrderRepository orderRepository;
+    @Autowired
+    private DatabaseClient databaseClient;
 
     @DynamicPropertySource
     static void postgresqlProperties(DynamicPropertyRegistry registry) {
@@ -74,4 +85,112 @@ class OrderRepositoryR2dbcTests {
                         order.lastModifiedBy().equals("jack"))
                 .verifyComplete();
     }
+
+    @Test
+    @WithMockUser("jack")
+    void whenInsertAllThenOrdersCreatedInOrderWithAuditMetadata() {
+        var acceptedOrder = Order.of("1234567891", "desc - Mr Chef", 2, 9.90, OrderStatus.ACCEPTED);
+        var rejectedOrder = OrderService.buildRejectedOrder("1234567892", 3);
+        StepVerifier.create(orderRepository.insertAll(List.of(acceptedOrder, rejectedOrder)))
+                .expectNextMatches(order -> order.id() != null &&
+                        order.foodRef().equals("1234567891") &&
+                        order.status().equals(OrderStatus.ACCEPTED) &&
+                        order.createdBy().equals("jack") &&
+                        order.version() == 1)
+                .expectNextMatches(order -> order.foodRef().equals("1234567892") &&
+                        Objects.isNull(order.foodPrice()) &&
+                        order.status().equals(OrderStatus.REJECTED))
+                .verifyComplete();
+    }
+
+    @Test
+    @WithMockUser("keyset")
+    void whenPagingByCursorThenOrdersReturnedNewestFirstWithoutGaps() {
+        var orders = List.of(
+                OrderService.buildRejectedOrder("1234567891", 1),
+                OrderService.buildRejectedOrder("1234567892", 1),
+                OrderService.buildRejectedOrder("1234567893", 1));
+        StepVerifier.create(orderRepository.saveAll(orders).then())
+                .verifyComplete();
+
+        var firstPage = orderRepository.findPageByCreatedBy("keyset", 2).collectList().block();
+        assertThat(firstPage).extracting(Order::foodRef).containsExactly("1234567893", "1234567892");
+
+        var cursor = OrderCursor.of(firstPage.get(1));
+        StepVerifier.create(orderRepository.findPageByCreatedByAfter("keyset", cursor.createdDate(), cursor.id(), 2))
+                .expectNextMatches(order -> order.foodRef().equals("1234567891"))
+                .verifyComplete();
+    }
+
+    @Test
+    @WithMockUser("versioned")
+    void whenOrdersAddedOrUpdatedThenListVersionChanges() {
+        StepVerifier.create(orderRepository.findListVersionByCreatedBy("versioned"))
+                .expectNextMatches(version -> version.orderCount() == 0 && version.lastModifiedDate() == null)
+                .verifyComplete();
+
+        var savedOrder = orderRepository.save(OrderService.buildRejectedOrder("1234567891", 1)).block();
+        var created = orderRepository.findListVersionByCreatedBy("versioned").block();
+        assertThat(created.orderCount()).isEqualTo(1);
+        assertThat(created.maxId()).isEqualTo(savedOrder.id());
+
+        orderRepository.markDispatched(new Long[]{savedOrder.id()}).blockLast();
+        var dispatched = orderRepository.findListVersionByCreatedBy("versioned").block();
+        assertThat(dispatched.tag()).isNotEqualTo(created.tag());
+        assertThat(orderRepository.findListVersionByCreatedBy("versioned").block()).isEqualTo(dispatched);
+    }
+
+    @Test
+    void whenMarkDispatchedThenStatusAndVersionUpdatedInOneStatement() {
+        var orders = List.of(
+                OrderService.buildRejectedOrder("1234567891", 1),
+                OrderService.buildRejectedOrder("1234567892", 1));
+        var savedOrders = orderRepository.saveAll(orders).collectList().block();
+        var orderIds = savedOrders.stream().map(Order::id).toArray(Long[]::new);
+
+        StepVerifier.create(orderRepository.markDispatched(orderIds))
+                .expectNextMatches(order -> order.status().equals(OrderStatus.DISPATCHED) && order.version() == 2)
+                .expectNextMatches(order -> order.status().equals(OrderStatus.DISPATCHED) && order.version() == 2)
+                .verifyComplete();
+    }
+
+    @Test
+    @WithMockUser("snapshots")
+    void whenOrdersOfSameFoodSavedThenFoodSnapshotSharedAndDescriptionKept() {
+        orderRepository.insertAll(List.of(
+                Order.of("1234567891", "Fish - and chips - Mr Chef", 1, 9.90, OrderStatus.ACCEPTED),
+                Order.of("1234567892", "Plain description", 1, 4.50, OrderStatus.ACCEPTED),
+                OrderService.buildRejectedOrder("1234567893", 1))).blockLast();
+        orderRepository.save(Order.of("1234567891", "Fish - and chips - Mr Chef", 2, 9.90, OrderStatus.ACCEPTED))
+                .block();
+
+        assertThat(orderRepository.findAllByCreatedBy("snapshots").collectList().block())
+                .extracting(Order::foodDescription, Order::foodPrice, Order::status)
+                .containsExactlyInAnyOrder(
+                        tuple("Fish - and chips - Mr Chef", 9.90, OrderStatus.ACCEPTED),
+                        tuple("Fish - and chips - Mr Chef", 9.90, OrderStatus.ACCEPTED),
+                        tuple("Plain description", 4.50, OrderStatus.ACCEPTED),
+                        tuple(null, null, OrderStatus.REJECTED));
+        var snapshots = databaseClient.sql("""
+                        SELECT food_snapshot.description, food_snapshot.chef, count(*) AS orders
+                        FROM orders JOIN food_snapshot ON food_snapshot.id = orders.food_snapshot_id
+                        WHERE created_by = 'snapshots'
+                        GROUP BY food_snapshot.id
+                        ORDER BY orders DESC""")
+                .map(row -> tuple(row.get("description", String.class), row.get("chef", String.class),
+                        row.get("orders", Long.class)))
+                .all().collectList().block();
+        assertThat(snapshots).containsExactly(
+                tuple("Fish - and chips", "Mr Chef", 2L),
+                tuple("Plain description", null, 1L));
+    }
+
+    @TestConfiguration
+    static class MetricsConfig {
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
 }
@@ -0,0 +1,213 @@
+package com.restaurant.orderservice.domain;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+
+import com.restaurant.orderservice.config.DispatchProperties;
+import com.restaurant.orderservice.config.OrderEventsProperties;
+import com.restaurant.orderservice.config.ReadWriteRoutingConnectionFactory;
+import com.restaurant.orderservice.event.OrderDispatchedMessage;
+import com.restaurant.orderservice.event.OrderOutboxRelay;
+import com.restaurant.orderservice.event.OrderOutboxRepository;
+import com.restaurant.orderservice.web.Food;
+import com.restaurant.orderservice.web.FoodClient;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+class OrderServiceTests {
+
+    private OrderRepository orderRepository;
+    private FoodClient foodClient;
+    private SimpleMeterRegistry meterRegistry;
+    private OrderSummaryRepository summaryRepository;
+    private OrderOutboxRepository outboxRepository;
+    private OrderOutboxRelay outboxRelay;
+    private TransactionalOperator transactionalOperator;
+    private OrderStatusHub orderStatusHub;
+    private OrderService orderService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setup() {
+        this.orderRepository = mock(OrderRepository.class);
+        this.foodClient = mock(FoodClient.class);
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.transactionalOperator = mock(TransactionalOperator.class);
+        given(transactionalOperator.transactional(any(Mono.class)))
+                .willAnswer(invocation -> invocation.getArgument(0));
+        this.summaryRepository = mock(OrderSummaryRepository.class);
+        given(summaryRepository.recordSubmitted(any())).willReturn(Mono.just(1));
+        given(summaryRepository.recordDispatched(any())).willReturn(Mono.just(1));
+        this.outboxRepository = mock(OrderOutboxRepository.class);
+        given(outboxRepository.saveAll(any(Iterable.class)))
+                .willAnswer(invocation -> Flux.fromIterable(invocation.getArgument(0)));
+        this.outboxRelay = mock(OrderOutboxRelay.class);
+        given(outboxRelay.publishCommitted(any())).willReturn(Mono.empty());
+        this.orderStatusHub = new OrderStatusHub(new Binder(new MapConfigurationPropertySource(Map.of()))
+                .bindOrCreate("restaurant.order-events", OrderEventsProperties.class), meterRegistry);
+        this.orderService = orderService(Map.of("restaurant.dispatch.retry-backoff", "1ms"));
+    }
+
+    private OrderService orderService(Map<String, String> dispatchProperties) {
+        return new OrderService(orderRepository, summaryRepository, outboxRepository, outboxRelay,
+                orderStatusHub, foodClient, transactionalOperator,
+                new Binder(new MapConfigurationPropertySource(dispatchProperties))
+                        .bindOrCreate("restaurant.dispatch", DispatchProperties.class),
+                meterRegistry);
+    }
+
+    @Test
+    void whenOrderAcceptedThenStagesAndOutcomeTimed() {
+        var food = new Food("1234567890", "desc", "chef", 9.90);
+        given(foodClient.lookupFood("1234567890")).willReturn(Mono.just(food));
+        given(orderRepository.save(any(Order.class)))
+                .willAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+        StepVerifier.create(orderService.submitOrder("1234567890", 1))
+                .expectNextMatches(order -> order.status().equals(OrderStatus.ACCEPTED))
+                .verifyComplete();
+
+        for (var stage : new String[]{"food_lookup", "persist", "outbox"}) {
+            assertThat(meterRegistry.get("order.submit.stage").tag("stage", stage).timer().count()).isEqualTo(1);
+        }
+        assertThat(meterRegistry.get("order.submit").tags("outcome", "ACCEPTED", "reason", "none")
+                .timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void whenFoodLookupTimesOutThenRejectionReasonTagged() {
+        given(foodClient.lookupFood("1234567890")).willReturn(Mono.error(new TimeoutException()));
+        given(orderRepository.save(any(Order.class)))
+                .willAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+        StepVerifier.create(orderService.submitOrder("1234567890", 1))
+                .expectNextMatches(order -> order.status().equals(OrderStatus.REJECTED))
+                .verifyComplete();
+
+        assertThat(meterRegistry.get("order.submit").tags("outcome", "REJECTED", "reason", "food_timeout")
+                .timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("order.submit").tags("outcome", "REJECTED", "reason", "food_not_found")
+                .timer().count()).isZero();
+    }
+
+    @Test
+    void whenBatchUpdateFailsOnceThenRetried() {
+        var dispatchedOrder = dispatchedOrder(1L);
+        given(orderRepository.markDispatched(any()))
+                .willReturn(Flux.error(new IllegalStateException("connection reset")))
+                .willReturn(Flux.just(dispatchedOrder));
+
+        StepVerifier.create(orderService.consumeOrderDispatchedEvent(Flux.just(new OrderDispatchedMessage(1L))))
+                .expectNext(dispatchedOrder)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void whenBatchUpdateKeepsFailingThenStreamContinues() {
+        given(orderRepository.markDispatched(any()))
+                .willReturn(Flux.error(new IllegalStateException("connection reset")));
+
+        StepVerifier.create(orderService.consumeOrderDispatchedEvent(
+                        Flux.just(new OrderDispatchedMessage(1L), new OrderDispatchedMessage(2L))))
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void whenBatchRetriedPastMaxLatencyThenLaterMessagesStillApplied() {
+        // The first batch waits out a long backoff while a single lane keeps flushing batches.
+        var orderService = orderService(Map.of(
+                "restaurant.dispatch.max-latency", "1ms",
+                "restaurant.dispatch.concurrency", "1",
+                "restaurant.dispatch.max-retries", "1",
+                "restaurant.dispatch.retry-backoff", "1s"));
+        given(orderRepository.markDispatched(any()))
+                .willReturn(Flux.error(new IllegalStateException("connection reset")))
+                .willAnswer(invocation -> Flux.fromArray(invocation.<Long[]>getArgument(0))
+                        .map(OrderServiceTests::dispatchedOrder));
+
+        StepVerifier.create(orderService.consumeOrderDispatchedEvent(Flux.range(1, 60)
+                        .delayElements(Duration.ofMillis(2))
+                        .map(id -> new OrderDispatchedMessage((long) id))))
+                .expectNextCount(60)
+                .expectComplete()
+                .verify(Duration.ofSeconds(10));
+    }
+
+    @Test
+    void whenReplicaBehindListVersionThenPageReadFromPrimary() {
+        var order = dispatchedOrder(2L);
+        givenReplicaVersion(new OrderListVersion(1, 1L, 1L, null), new OrderListVersion(2, 2L, 3L, null));
+        givenPage(dispatchedOrder(1L), order);
+
+        var version = orderService.getOrderListVersion("jack").block();
+        StepVerifier.create(orderService.getOrders("jack", null, 10, version))
+                .expectNext(order)
+                .verifyComplete();
+    }
+
+    @Test
+    void whenReplicaCaughtUpWithListVersionThenPageReadFromReplica() {
+        var version = new OrderListVersion(2, 2L, 3L, null);
+        var order = dispatchedOrder(2L);
+        givenReplicaVersion(version, version);
+        givenPage(order, dispatchedOrder(1L));
+
+        StepVerifier.create(orderService.getOrders("jack", null, 10, version))
+                .expectNext(order)
+                .verifyComplete();
+    }
+
+    @Test
+    void whenOrderDispatchedThenPushedToOwnerSubscribers() {
+        var dispatchedOrder = dispatchedOrder(1L, "alice");
+        given(orderRepository.markDispatched(any())).willReturn(Flux.just(dispatchedOrder));
+
+        StepVerifier.create(orderStatusHub.subscribe("alice"))
+                .then(() -> orderService.consumeOrderDispatchedEvent(Flux.just(new OrderDispatchedMessage(1L)))
+                        .blockLast(Duration.ofSeconds(5)))
+                .expectNext(dispatchedOrder)
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+        StepVerifier.create(orderStatusHub.subscribe("bob"))
+                .then(() -> orderService.consumeOrderDispatchedEvent(Flux.just(new OrderDispatchedMessage(1L)))
+                        .blockLast(Duration.ofSeconds(5)))
+                .expectNoEvent(Duration.ofMillis(100))
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    private void givenReplicaVersion(OrderListVersion replicaVersion, OrderListVersion primaryVersion) {
+        given(orderRepository.findListVersionByCreatedBy("jack")).willReturn(Mono.deferContextual(context ->
+                Mono.just(ReadWriteRoutingConnectionFactory.isReadOnly(context) ? replicaVersion : primaryVersion)));
+    }
+
+    private void givenPage(Order replicaOrder, Order primaryOrder) {
+        given(orderRepository.findPageByCreatedBy("jack", 10)).willReturn(Flux.deferContextual(context ->
+                Flux.just(ReadWriteRoutingConnectionFactory.isReadOnly(context) ? replicaOrder : primaryOrder)));
+    }
+
+    private static Order dispatchedOrder(Long id) {
+        return dispatchedOrder(id, null);
+    }
+
+    private static Order dispatchedOrder(Long id, String createdBy) {
+        return new Order(id, "1234567890", "desc", 1, 9.90, OrderStatus.DISPATCHED,
+                null, null, createdBy, createdBy, 2);
+    }
+}
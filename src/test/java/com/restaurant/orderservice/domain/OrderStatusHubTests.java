@@ -0,0 +1,73 @@
+package com.restaurant.orderservice.domain;
+
+import java.time.Duration;
+import java.util.Map;
+
+import com.restaurant.orderservice.config.OrderEventsProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.test.StepVerifier;
+
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OrderStatusHubTests {
+
+    private SimpleMeterRegistry meterRegistry;
+    private OrderStatusHub orderStatusHub;
+
+    @BeforeEach
+    void setup() {
+        this.meterRegistry = new SimpleMeterRegistry();
+        var orderEventsProperties = new Binder(new MapConfigurationPropertySource(Map.of(
+                "restaurant.order-events.subscriber-buffer-size", "2")))
+                .bindOrCreate("restaurant.order-events", OrderEventsProperties.class);
+        this.orderStatusHub = new OrderStatusHub(orderEventsProperties, meterRegistry);
+    }
+
+    @Test
+    void whenOrderPublishedThenOnlyOwnerSubscribersReceiveIt() {
+        var order = order(1L, "alice");
+        StepVerifier.create(orderStatusHub.subscribe("alice"))
+                .then(() -> StepVerifier.create(orderStatusHub.subscribe("bob"))
+                        .then(() -> orderStatusHub.publish(order))
+                        .expectNoEvent(Duration.ofMillis(50))
+                        .thenCancel()
+                        .verify())
+                .expectNext(order)
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+        assertThat(meterRegistry.get("order.events.published").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void whenSubscriberCancelsThenNoLongerCounted() {
+        StepVerifier.create(orderStatusHub.subscribe("alice"))
+                .then(() -> assertThat(meterRegistry.get("order.events.subscribers").gauge().value()).isEqualTo(1))
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+        assertThat(meterRegistry.get("order.events.subscribers").gauge().value()).isZero();
+    }
+
+    @Test
+    void whenSubscriberBufferFullThenEvicted() {
+        StepVerifier.create(orderStatusHub.subscribe("alice"), 0)
+                .then(() -> {
+                    for (long id = 1; id <= 3; id++) {
+                        orderStatusHub.publish(order(id, "alice"));
+                    }
+                })
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+        assertThat(meterRegistry.get("order.events.evicted").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("order.events.subscribers").gauge().value()).isZero();
+    }
+
+    private static Order order(Long id, String createdBy) {
+        return new Order(id, "1234567890", "desc", 1, 9.90, OrderStatus.DISPATCHED,
+                null, null, createdBy, createdBy, 2);
+    }
+}
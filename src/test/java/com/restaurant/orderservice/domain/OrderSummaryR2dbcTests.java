@@ -0,0 +1,164 @@
+package com.restaurant.orderservice.domain;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+
+import com.restaurant.orderservice.config.DataConfig;
+import com.restaurant.orderservice.config.DispatchProperties;
+import com.restaurant.orderservice.config.OrderEventsProperties;
+import com.restaurant.orderservice.config.OrderSummaryProperties;
+import com.restaurant.orderservice.event.OrderDispatchedMessage;
+import com.restaurant.orderservice.event.OrderOutboxRelay;
+import com.restaurant.orderservice.web.Food;
+import com.restaurant.orderservice.web.FoodClient;
+import com.restaurant.orderservice.web.OrderRequest;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.autoconfigure.data.r2dbc.DataR2dbcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+
+@DataR2dbcTest(properties = "restaurant.order-summary.rebuild-chunk-size=1")
+@Import({DataConfig.class, OrderService.class, OrderStatusHub.class, OrderSummaryRebuilder.class,
+        OrderSummaryR2dbcTests.MetricsConfig.class})
+@EnableConfigurationProperties({DispatchProperties.class, OrderEventsProperties.class, OrderSummaryProperties.class})
+@Testcontainers
+class OrderSummaryR2dbcTests {
+
+    private static final Food FOOD = new Food("1234567890", "Pizza margherita", "Mario", 9.90);
+
+    @Container
+    static PostgreSQLContainer<?> postgresql =
+            new PostgreSQLContainer<>(DockerImageName.parse("postgres:14.4"));
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private OrderSummaryRepository summaryRepository;
+
+    @Autowired
+    private OrderSummaryRebuilder summaryRebuilder;
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    @MockBean
+    private FoodClient foodClient;
+
+    @MockBean
+    private OrderOutboxRelay outboxRelay;
+
+    @DynamicPropertySource
+    static void postgresqlProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.r2dbc.url", OrderSummaryR2dbcTests::r2dbcUrl);
+        registry.add("spring.r2dbc.username", postgresql::getUsername);
+        registry.add("spring.r2dbc.password", postgresql::getPassword);
+        registry.add("spring.flyway.url", postgresql::getJdbcUrl);
+    }
+
+    private static String r2dbcUrl() {
+        return String.format("r2dbc:postgresql://%s:%s/%s",
+                postgresql.getHost(),
+                postgresql.getMappedPort(PostgreSQLContainer.POSTGRESQL_PORT),
+                postgresql.getDatabaseName());
+    }
+
+    @BeforeEach
+    void setup() {
+        given(foodClient.lookupFood(FOOD.ref())).willReturn(Mono.just(FOOD));
+        given(foodClient.lookupFood("0000000000")).willReturn(Mono.empty());
+        given(foodClient.getFoodByRef(FOOD.ref())).willReturn(Mono.just(FOOD));
+        given(outboxRelay.publishCommitted(any())).willReturn(Mono.empty());
+    }
+
+    @Test
+    void whenOrdersSubmittedAndDispatchedThenSummaryMatchesRecomputation() {
+        var dispatched = as("alice", orderService.submitOrder(FOOD.ref(), 2));
+        as("alice", orderService.submitOrder("0000000000", 1));
+        as("alice", orderService.submitOrders(List.of(new OrderRequest(FOOD.ref(), 1))).then());
+        as("bob", orderService.submitOrder(FOOD.ref(), 3));
+        // A redelivered dispatched event must not be counted twice.
+        dispatch(dispatched.id());
+        dispatch(dispatched.id());
+
+        var incremental = summaries("alice", "bob");
+        assertThat(incremental.get(0)).satisfies(summary -> {
+            assertThat(summary.orderCount()).isEqualTo(3);
+            assertThat(summary.acceptedCount()).isEqualTo(1);
+            assertThat(summary.dispatchedCount()).isEqualTo(1);
+            assertThat(summary.totalSpend()).isEqualByComparingTo(new BigDecimal("29.70"));
+        });
+        assertThat(incremental.get(1).totalSpend()).isEqualByComparingTo(new BigDecimal("29.70"));
+
+        summaryRebuilder.rebuild().block(Duration.ofSeconds(10));
+        assertThat(summaries("alice", "bob")).isEqualTo(incremental);
+    }
+
+    @Test
+    void whenSummariesDriftThenRebuildRecomputesThemInChunks() {
+        as("carol", orderService.submitOrder(FOOD.ref(), 1));
+        as("dave", orderService.submitOrder(FOOD.ref(), 2));
+        var expected = summaries("carol", "dave");
+        databaseClient.sql("UPDATE order_summary SET order_count = 99 WHERE user_id = 'carol'")
+                .then().block();
+        databaseClient.sql("DELETE FROM order_summary WHERE user_id = 'dave'")
+                .then().block();
+
+        var users = summaryRebuilder.rebuild().block(Duration.ofSeconds(10));
+
+        assertThat(users).isGreaterThanOrEqualTo(2);
+        assertThat(summaries("carol", "dave")).isEqualTo(expected);
+    }
+
+    private static <T> T as(String userId, Mono<T> operation) {
+        return operation
+                .contextWrite(ReactiveSecurityContextHolder.withAuthentication(
+                        new TestingAuthenticationToken(userId, null, "ROLE_customer")))
+                .block(Duration.ofSeconds(10));
+    }
+
+    private void dispatch(Long orderId) {
+        orderService.consumeOrderDispatchedEvent(Flux.just(new OrderDispatchedMessage(orderId)))
+                .blockLast(Duration.ofSeconds(10));
+    }
+
+    private List<OrderSummary> summaries(String... userIds) {
+        return Flux.fromArray(userIds)
+                .concatMap(summaryRepository::findById)
+                .collectList()
+                .block(Duration.ofSeconds(10));
+    }
+
+    @TestConfiguration
+    static class MetricsConfig {
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+}
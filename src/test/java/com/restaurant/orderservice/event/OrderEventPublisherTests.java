@@ -0,0 +1,125 @@
+package com.restaurant.orderservice.event;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.restaurant.orderservice.config.OutboxProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.messaging.Message;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+class OrderEventPublisherTests {
+
+    private StreamBridge streamBridge;
+    private SimpleMeterRegistry meterRegistry;
+    private OrderEventPublisher eventPublisher;
+
+    @BeforeEach
+    void setup() {
+        this.streamBridge = mock(StreamBridge.class);
+        this.meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (eventPublisher != null) {
+            eventPublisher.stop();
+        }
+    }
+
+    private OrderEventPublisher eventPublisher(Map<String, String> properties) {
+        var source = new MapConfigurationPropertySource(new HashMap<>(properties));
+        var outboxProperties = new Binder(source).bindOrCreate("restaurant.outbox", OutboxProperties.class);
+        return new OrderEventPublisher(streamBridge, outboxProperties, meterRegistry);
+    }
+
+    @Test
+    void whenBrokerConfirmsThenPublished() {
+        given(streamBridge.send(eq("acceptOrder-out-0"), any(Message.class))).willAnswer(invocation -> {
+            Message<?> message = invocation.getArgument(1);
+            var correlationData = (CorrelationData) message.getHeaders()
+                    .get(AmqpHeaders.PUBLISH_CONFIRM_CORRELATION);
+            correlationData.getFuture().set(new CorrelationData.Confirm(true, null));
+            return true;
+        });
+        this.eventPublisher = eventPublisher(Map.of());
+        eventPublisher.start();
+
+        StepVerifier.create(eventPublisher.publish(new OrderOutboxEntry(1L, 10L, null)))
+                .expectNext(true)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+        assertThat(meterRegistry.get("order.publisher.confirm").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void whenBrokerDoesNotConfirmThenNotPublished() {
+        given(streamBridge.send(eq("acceptOrder-out-0"), any(Message.class))).willReturn(true);
+        this.eventPublisher = eventPublisher(Map.of("restaurant.outbox.confirm-timeout", "100ms"));
+        eventPublisher.start();
+
+        StepVerifier.create(eventPublisher.publish(new OrderOutboxEntry(1L, 10L, null)))
+                .expectNext(false)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void whenStoppedThenInFlightAndBufferedEventsFail() {
+        given(streamBridge.send(eq("acceptOrder-out-0"), any(Message.class))).willReturn(true);
+        this.eventPublisher = eventPublisher(Map.of(
+                "restaurant.outbox.batch-size", "1",
+                "restaurant.outbox.confirm-timeout", "1m"));
+        eventPublisher.start();
+
+        var inFlight = eventPublisher.publish(new OrderOutboxEntry(1L, 10L, null)).toFuture();
+        // The first event waits for its confirm, so the second stays buffered.
+        verify(streamBridge, timeout(5000)).send(eq("acceptOrder-out-0"), any(Message.class));
+        var buffered = eventPublisher.publish(new OrderOutboxEntry(2L, 20L, null)).toFuture();
+        eventPublisher.stop();
+
+        StepVerifier.create(Mono.fromFuture(inFlight))
+                .expectError(IllegalStateException.class)
+                .verify(Duration.ofSeconds(5));
+        StepVerifier.create(Mono.fromFuture(buffered))
+                .expectError(IllegalStateException.class)
+                .verify(Duration.ofSeconds(5));
+        StepVerifier.create(eventPublisher.publish(new OrderOutboxEntry(3L, 30L, null)))
+                .expectError(IllegalStateException.class)
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void whenBufferFullAndRejectingThenNotPublished() {
+        this.eventPublisher = eventPublisher(Map.of(
+                "restaurant.outbox.buffer-capacity", "1",
+                "restaurant.outbox.buffer-overflow", "reject"));
+
+        // Not started, so the first event stays buffered.
+        eventPublisher.publish(new OrderOutboxEntry(1L, 10L, null)).subscribe();
+        StepVerifier.create(eventPublisher.publish(new OrderOutboxEntry(2L, 20L, null)))
+                .expectNext(false)
+                .verifyComplete();
+        assertThat(meterRegistry.get("order.publisher.rejected").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("order.publisher.queue.depth").gauge().value()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,127 @@
+package com.restaurant.orderservice.event;
+
+import java.util.List;
+
+import com.restaurant.orderservice.config.DataConfig;
+import com.restaurant.orderservice.config.OutboxProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+import reactor.test.StepVerifier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.autoconfigure.data.r2dbc.DataR2dbcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.messaging.Message;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@DataR2dbcTest(properties = {
+        "restaurant.outbox.poll-interval=1h",
+        "restaurant.outbox.publisher-confirms=false",
+        "restaurant.outbox.await-confirm=true",
+        "restaurant.outbox.relay-min-age=0s"
+})
+@Import({DataConfig.class, OrderOutboxRelay.class, OrderEventPublisher.class,
+        OrderOutboxRelayR2dbcTests.MetricsConfig.class})
+@EnableConfigurationProperties(OutboxProperties.class)
+@Testcontainers
+class OrderOutboxRelayR2dbcTests {
+
+    @Container
+    static PostgreSQLContainer<?> postgresql =
+            new PostgreSQLContainer<>(DockerImageName.parse("postgres:14.4"));
+
+    @Autowired
+    private OrderOutboxRepository outboxRepository;
+
+    @Autowired
+    private OrderOutboxRelay outboxRelay;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @MockBean
+    private StreamBridge streamBridge;
+
+    @DynamicPropertySource
+    static void postgresqlProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.r2dbc.url", OrderOutboxRelayR2dbcTests::r2dbcUrl);
+        registry.add("spring.r2dbc.username", postgresql::getUsername);
+        registry.add("spring.r2dbc.password", postgresql::getPassword);
+        registry.add("spring.flyway.url", postgresql::getJdbcUrl);
+    }
+
+    private static String r2dbcUrl() {
+        return String.format("r2dbc:postgresql://%s:%s/%s",
+                postgresql.getHost(),
+                postgresql.getMappedPort(PostgreSQLContainer.POSTGRESQL_PORT),
+                postgresql.getDatabaseName());
+    }
+
+    @Test
+    void whenEntriesPublishedThenRemovedFromOutbox() {
+        var published = meterRegistry.get("order.outbox.published").counter().count();
+        given(streamBridge.send(eq("acceptOrder-out-0"), any(Message.class))).willReturn(true);
+        StepVerifier.create(outboxRepository.deleteAll()
+                        .thenMany(outboxRepository.saveAll(List.of(OrderOutboxEntry.of(1L), OrderOutboxEntry.of(2L))))
+                        .then(outboxRelay.relayPending())
+                        .then(outboxRepository.count()))
+                .expectNext(0L)
+                .verifyComplete();
+
+        verify(streamBridge, times(2)).send(eq("acceptOrder-out-0"), any(Message.class));
+        assertThat(meterRegistry.get("order.outbox.published").counter().count()).isEqualTo(published + 2);
+    }
+
+    @Test
+    void whenSendFailsThenEntryKeptForRetry() {
+        given(streamBridge.send(eq("acceptOrder-out-0"), any(Message.class))).willReturn(false);
+        StepVerifier.create(outboxRepository.deleteAll()
+                        .then(outboxRepository.save(OrderOutboxEntry.of(3L)))
+                        .then(outboxRelay.relayPending())
+                        .then(outboxRepository.count()))
+                .expectNext(1L)
+                .verifyComplete();
+        assertThat(meterRegistry.get("order.outbox.pending").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    void whenPublishedOnCommitThenRemovedWithoutPolling() {
+        given(streamBridge.send(eq("acceptOrder-out-0"), any(Message.class))).willReturn(true);
+        StepVerifier.create(outboxRepository.deleteAll()
+                        .thenMany(outboxRepository.saveAll(List.of(OrderOutboxEntry.of(4L), OrderOutboxEntry.of(5L))))
+                        .collectList()
+                        .flatMap(outboxRelay::publishCommitted)
+                        .then(outboxRepository.count()))
+                .expectNext(0L)
+                .verifyComplete();
+
+        verify(streamBridge, times(2)).send(eq("acceptOrder-out-0"), any(Message.class));
+    }
+
+    @TestConfiguration
+    static class MetricsConfig {
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.restaurant.orderservice.web;
+
+import com.restaurant.orderservice.config.ClientProperties;
+import com.restaurant.orderservice.config.WarmupProperties;
+import com.restaurant.orderservice.domain.OrderListVersion;
+import com.restaurant.orderservice.domain.OrderService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.security.oauth2.jwt.NimbusReactiveJwtDecoder;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class ApplicationWarmupTests {
+
+    private MockWebServer mockWebServer;
+    private OrderService orderService;
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setup() throws IOException {
+        this.mockWebServer = new MockWebServer();
+        this.mockWebServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                requests.add(request.getMethod() + " " + request.getPath());
+                if (request.getPath().equals("/jwks")) {
+                    return new MockResponse().addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                            .setBody("{\"keys\":[]}");
+                }
+                return new MockResponse();
+            }
+        });
+        this.mockWebServer.start();
+        this.orderService = mock(OrderService.class);
+        given(orderService.getOrderListVersion(anyString()))
+                .willReturn(Mono.just(new OrderListVersion(0, null, null, null)));
+        given(orderService.getOrders(anyString(), any(), anyInt())).willReturn(Flux.empty());
+    }
+
+    @AfterEach
+    void clean() throws IOException {
+        this.mockWebServer.shutdown();
+    }
+
+    private ApplicationWarmup applicationWarmup(Map<String, String> properties) {
+        var source = new MapConfigurationPropertySource(properties);
+        source.put("restaurant.tasty-service-uri", mockWebServer.url("/").uri().toString());
+        var binder = new Binder(source);
+        var webClient = WebClient.builder().baseUrl(mockWebServer.url("/").uri().toString()).build();
+        var jwtDecoder = NimbusReactiveJwtDecoder.withJwkSetUri(mockWebServer.url("/jwks").toString()).build();
+        return new ApplicationWarmup(binder.bindOrCreate("restaurant.warmup", WarmupProperties.class),
+                binder.bind("restaurant", ClientProperties.class).get(), orderService, webClient, List.of(),
+                Optional.of(jwtDecoder), ServerCodecConfigurer.create(), new SimpleMeterRegistry());
+    }
+
+    private static void awaitFinished(ApplicationWarmup applicationWarmup) throws InterruptedException {
+        for (int attempt = 0; attempt < 100 && !applicationWarmup.isFinished(); attempt++) {
+            Thread.sleep(100);
+        }
+    }
+
+    @Test
+    void whenWarmupRunningThenOutOfService() {
+        var applicationWarmup = applicationWarmup(Map.of());
+        var healthIndicator = new WarmupHealthIndicator(applicationWarmup);
+
+        assertThat(healthIndicator.health().getStatus()).isEqualTo(Status.OUT_OF_SERVICE);
+    }
+
+    @Test
+    void whenWarmupDisabledThenUp() {
+        var applicationWarmup = applicationWarmup(Map.of("restaurant.warmup.enabled", "false"));
+        applicationWarmup.start();
+        var healthIndicator = new WarmupHealthIndicator(applicationWarmup);
+
+        assertThat(healthIndicator.health().getStatus()).isEqualTo(Status.UP);
+        assertThat(healthIndicator.health().getDetails()).containsEntry("state", ApplicationWarmup.State.DISABLED);
+    }
+
+    @Test
+    void whenWarmupCompletedThenUpWithEveryStepCompleted() throws InterruptedException {
+        var applicationWarmup = applicationWarmup(Map.of(
+                "restaurant.warmup.iterations", "200",
+                "restaurant.warmup.food-connections", "3"));
+        applicationWarmup.start();
+        awaitFinished(applicationWarmup);
+
+        var health = new WarmupHealthIndicator(applicationWarmup).health();
+        assertThat(health.getStatus()).isEqualTo(Status.UP);
+        assertThat(health.getDetails()).containsEntry("state", ApplicationWarmup.State.COMPLETED)
+                .containsEntry("exercises", "200/200");
+        assertThat(applicationWarmup.steps().values()).allMatch(step -> step.startsWith("completed"));
+        assertThat(requests).contains("GET /jwks").filteredOn("HEAD /"::equals).hasSize(3);
+    }
+
+    @Test
+    void whenWarmupCompletedThenOnlyDatabaseIterationsQueried() throws InterruptedException {
+        var applicationWarmup = applicationWarmup(Map.of(
+                "restaurant.warmup.iterations", "200",
+                "restaurant.warmup.database-iterations", "5"));
+        applicationWarmup.start();
+        awaitFinished(applicationWarmup);
+
+        assertThat(applicationWarmup.exercised()).isEqualTo(200);
+        verify(orderService, times(5)).getOrderListVersion(ApplicationWarmup.WARMUP_USER);
+        verify(orderService, times(5)).getOrders(eq(ApplicationWarmup.WARMUP_USER), any(), anyInt());
+    }
+
+    @Test
+    void whenBudgetExhaustedThenUpWithExercisesCancelled() throws InterruptedException {
+        given(orderService.getOrders(anyString(), any(), anyInt())).willReturn(Flux.never());
+        var applicationWarmup = applicationWarmup(Map.of("restaurant.warmup.budget", "2s"));
+        applicationWarmup.start();
+        awaitFinished(applicationWarmup);
+
+        var health = new WarmupHealthIndicator(applicationWarmup).health();
+        assertThat(health.getStatus()).isEqualTo(Status.UP);
+        assertThat(health.getDetails()).containsEntry("state", ApplicationWarmup.State.BUDGET_EXHAUSTED);
+        assertThat(applicationWarmup.steps().get(ApplicationWarmup.EXERCISES)).startsWith("cancelled");
+    }
+
+    @Test
+    void whenFoodServiceUnavailableThenStepFailedAndWarmupCompleted() throws IOException, InterruptedException {
+        var applicationWarmup = applicationWarmup(Map.of("restaurant.warmup.iterations", "10"));
+        mockWebServer.shutdown();
+        applicationWarmup.start();
+        awaitFinished(applicationWarmup);
+
+        assertThat(applicationWarmup.state()).isEqualTo(ApplicationWarmup.State.COMPLETED);
+        assertThat(applicationWarmup.steps().get(ApplicationWarmup.FOOD_POOL)).startsWith("failed");
+        assertThat(applicationWarmup.steps().get(ApplicationWarmup.EXERCISES)).startsWith("completed");
+    }
+}
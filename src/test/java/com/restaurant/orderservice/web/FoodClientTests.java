@@ -1,31 +1,86 @@
 package com.restaurant.orderservice.web;
 
-import com.restaurant.orderservice.web.Food;
-import com.restaurant.orderservice.web.FoodClient;
+import com.restaurant.orderservice.config.ClientProperties;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
 
 public class FoodClientTests {
 
     private MockWebServer mockWebServer;
     private FoodClient foodClient;
+    private SimpleMeterRegistry meterRegistry;
 
     @BeforeEach
     void setup() throws IOException {
         this.mockWebServer = new MockWebServer();
         this.mockWebServer.start();
-        var webClient = WebClient.builder().baseUrl(mockWebServer.url("/").uri().toString()).build();
-        this.foodClient = new FoodClient(webClient);
+        var tastyServiceUri = mockWebServer.url("/").uri().toString();
+        var webClient = WebClient.builder().baseUrl(tastyServiceUri).build();
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.foodClient = new FoodClient(webClient, clientProperties(tastyServiceUri),
+                CircuitBreakerRegistry.ofDefaults(), BulkheadRegistry.ofDefaults(), meterRegistry);
+    }
+
+    private static ClientProperties clientProperties(String tastyServiceUri) {
+        return clientProperties(tastyServiceUri, Map.of());
+    }
+
+    private static ClientProperties clientProperties(String tastyServiceUri, Map<String, String> properties) {
+        var source = new MapConfigurationPropertySource(properties);
+        source.put("restaurant.tasty-service-uri", tastyServiceUri);
+        return new Binder(source).bind("restaurant", ClientProperties.class).get();
+    }
+
+    private FoodClient batchingFoodClient() {
+        var tastyServiceUri = mockWebServer.url("/").uri().toString();
+        var webClient = WebClient.builder().baseUrl(tastyServiceUri).build();
+        return new FoodClient(webClient, clientProperties(tastyServiceUri, Map.of(
+                "restaurant.food-batch.enabled", "true",
+                "restaurant.food-batch.window", "50ms")),
+                CircuitBreakerRegistry.ofDefaults(), BulkheadRegistry.ofDefaults(), meterRegistry);
+    }
+
+    private FoodClient hedgingFoodClient(int maxExtraLoadPercent) {
+        var tastyServiceUri = mockWebServer.url("/").uri().toString();
+        var webClient = WebClient.builder().baseUrl(tastyServiceUri).build();
+        return new FoodClient(webClient, clientProperties(tastyServiceUri, Map.of(
+                "restaurant.food-hedge.enabled", "true",
+                "restaurant.food-hedge.delay", "50ms",
+                "restaurant.food-hedge.max-extra-load-percent", String.valueOf(maxExtraLoadPercent))),
+                CircuitBreakerRegistry.ofDefaults(), BulkheadRegistry.ofDefaults(), meterRegistry);
+    }
+
+    private static MockResponse foodResponse(String foodRef) {
+        return new MockResponse().addHeader(HttpHeaders.CONTENT_TYPE,
+                MediaType.APPLICATION_JSON_VALUE).setBody(String.format("""
+                {
+                "ref": "%s",
+                "description": "desc1",
+                "chef": "MrChef",
+                "price": 9.90
+                }
+                """, foodRef));
     }
 
     @AfterEach
@@ -66,4 +121,196 @@ public class FoodClientTests {
                 .verifyComplete();
     }
 
-}
\ No newline at end of file
+    @Test
+    void whenFoodServiceFailsThenRetriesAndFallbackCounted() {
+        var foodRef = "1234567890";
+        for (int attempt = 0; attempt < 4; attempt++) {
+            mockWebServer.enqueue(new MockResponse().setResponseCode(503));
+        }
+
+        StepVerifier.create(foodClient.getFoodByRef(foodRef))
+                .expectNextCount(0)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+
+        assertThat(meterRegistry.get("food.lookup.retries").counter().count()).isEqualTo(3);
+        assertThat(meterRegistry.get("food.lookup.fallbacks").tag("reason", "error").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void whenCircuitOpenThenRejectWithoutCallingFoodService() {
+        var circuitBreakerRegistry = CircuitBreakerRegistry.ofDefaults();
+        var tastyServiceUri = mockWebServer.url("/").uri().toString();
+        var foodClient = new FoodClient(WebClient.builder().baseUrl(tastyServiceUri).build(),
+                clientProperties(tastyServiceUri), circuitBreakerRegistry, BulkheadRegistry.ofDefaults(),
+                meterRegistry);
+        circuitBreakerRegistry.circuitBreaker(FoodClient.FOOD_SERVICE).transitionToForcedOpenState();
+
+        StepVerifier.create(foodClient.getFoodByRef("1234567890"))
+                .expectNextCount(0)
+                .verifyComplete();
+
+        assertThat(mockWebServer.getRequestCount()).isZero();
+        assertThat(meterRegistry.get("food.lookup.rejected").tag("reason", "circuit_open").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void whenCircuitOpenThenServeLastKnownFood() throws InterruptedException {
+        var foodRef = "1234567890";
+        var circuitBreakerRegistry = CircuitBreakerRegistry.ofDefaults();
+        var tastyServiceUri = mockWebServer.url("/").uri().toString();
+        var foodClient = new FoodClient(WebClient.builder().baseUrl(tastyServiceUri).build(),
+                clientProperties(tastyServiceUri, Map.of(
+                        "restaurant.food-cache.time-to-live", "50ms",
+                        "restaurant.food-cache.refresh-after", "10ms")),
+                circuitBreakerRegistry, BulkheadRegistry.ofDefaults(), meterRegistry);
+        mockWebServer.enqueue(foodResponse(foodRef));
+        StepVerifier.create(foodClient.getFoodByRef(foodRef))
+                .expectNextCount(1)
+                .verifyComplete();
+        Thread.sleep(100);
+        circuitBreakerRegistry.circuitBreaker(FoodClient.FOOD_SERVICE).transitionToForcedOpenState();
+
+        StepVerifier.create(foodClient.getFoodByRef(foodRef))
+                .expectNextMatches(food -> food.ref().equals(foodRef))
+                .verifyComplete();
+
+        assertThat(mockWebServer.getRequestCount()).isEqualTo(1);
+        assertThat(meterRegistry.get("food.lookup.stale").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void whenFirstRequestSlowThenHedgeAnswers() {
+        var foodRef = "1234567890";
+        mockWebServer.enqueue(foodResponse(foodRef).setHeadersDelay(2, TimeUnit.SECONDS));
+        mockWebServer.enqueue(foodResponse(foodRef));
+        var foodClient = hedgingFoodClient(100);
+
+        StepVerifier.create(foodClient.getFoodByRef(foodRef))
+                .expectNextMatches(food -> food.ref().equals(foodRef))
+                .expectComplete()
+                .verify(Duration.ofSeconds(1));
+
+        assertThat(mockWebServer.getRequestCount()).isEqualTo(2);
+        assertThat(meterRegistry.get("food.hedge.fired").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("food.hedge.won").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void whenFirstRequestFailsThenHedgeAnswers() {
+        var foodRef = "1234567890";
+        // The first request fails after the hedge was sent, but before the hedge answers.
+        mockWebServer.enqueue(new MockResponse().setResponseCode(503).setHeadersDelay(100, TimeUnit.MILLISECONDS));
+        mockWebServer.enqueue(foodResponse(foodRef).setHeadersDelay(150, TimeUnit.MILLISECONDS));
+        var foodClient = hedgingFoodClient(100);
+
+        StepVerifier.create(foodClient.getFoodByRef(foodRef))
+                .expectNextMatches(food -> food.ref().equals(foodRef))
+                .expectComplete()
+                .verify(Duration.ofSeconds(2));
+
+        assertThat(mockWebServer.getRequestCount()).isEqualTo(2);
+        assertThat(meterRegistry.get("food.hedge.won").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void whenHedgeBudgetExhaustedThenWaitForFirstRequest() {
+        var foodRef = "1234567890";
+        mockWebServer.enqueue(foodResponse(foodRef).setHeadersDelay(200, TimeUnit.MILLISECONDS));
+        var foodClient = hedgingFoodClient(0);
+
+        StepVerifier.create(foodClient.getFoodByRef(foodRef))
+                .expectNextMatches(food -> food.ref().equals(foodRef))
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+
+        assertThat(mockWebServer.getRequestCount()).isEqualTo(1);
+        assertThat(meterRegistry.get("food.hedge.denied").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void whenFoodRequestedTwiceThenServedFromCache() {
+        var foodRef = "1234567892";
+        mockWebServer.enqueue(foodResponse(foodRef));
+
+        StepVerifier.create(foodClient.getFoodByRef(foodRef))
+                .expectNextMatches(food -> food.ref().equals(foodRef))
+                .verifyComplete();
+        StepVerifier.create(foodClient.getFoodByRef(foodRef))
+                .expectNextMatches(food -> food.ref().equals(foodRef))
+                .verifyComplete();
+
+        assertThat(mockWebServer.getRequestCount()).isEqualTo(1);
+        assertThat(meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void whenConcurrentMissesThenSingleRequest() {
+        var foodRef = "1234567893";
+        mockWebServer.enqueue(foodResponse(foodRef).setBodyDelay(200, TimeUnit.MILLISECONDS));
+
+        var foods = Flux.range(0, 10)
+                .flatMap(i -> foodClient.getFoodByRef(foodRef));
+
+        StepVerifier.create(foods)
+                .expectNextCount(10)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+        assertThat(mockWebServer.getRequestCount()).isEqualTo(1);
+    }
+
+    @Test
+    void whenFoodNotExistsThenNotCached() {
+        var foodRef = "1234567894";
+        mockWebServer.enqueue(new MockResponse().setResponseCode(404));
+        mockWebServer.enqueue(foodResponse(foodRef));
+
+        StepVerifier.create(foodClient.getFoodByRef(foodRef))
+                .expectNextCount(0)
+                .verifyComplete();
+        StepVerifier.create(foodClient.getFoodByRef(foodRef))
+                .expectNextMatches(food -> food.ref().equals(foodRef))
+                .verifyComplete();
+    }
+
+    @Test
+    void whenBatchingEnabledThenConcurrentLookupsShareBulkRequest() throws InterruptedException {
+        mockWebServer.enqueue(new MockResponse().addHeader(HttpHeaders.CONTENT_TYPE,
+                MediaType.APPLICATION_JSON_VALUE).setBody("""
+                [
+                {"ref": "111", "description": "desc1", "chef": "MrChef", "price": 9.90},
+                {"ref": "222", "description": "desc2", "chef": "MrChef", "price": 4.90}
+                ]
+                """));
+        var batchingFoodClient = batchingFoodClient();
+
+        var foods = Flux.just("111", "222", "333")
+                .flatMap(ref -> batchingFoodClient.getFoodByRef(ref));
+
+        StepVerifier.create(foods)
+                .expectNextCount(2)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+        assertThat(mockWebServer.getRequestCount()).isEqualTo(1);
+        assertThat(mockWebServer.takeRequest().getRequestUrl().queryParameter("refs"))
+                .contains("111", "222", "333");
+        assertThat(meterRegistry.get("food.batch.size").summary().max()).isEqualTo(3);
+    }
+
+    @Test
+    void whenBulkEndpointMissingThenFallBackToSingleLookups() {
+        mockWebServer.enqueue(new MockResponse().setResponseCode(404));
+        mockWebServer.enqueue(foodResponse("444"));
+        var batchingFoodClient = batchingFoodClient();
+
+        StepVerifier.create(batchingFoodClient.getFoodByRef("444"))
+                .expectNextMatches(food -> food.ref().equals("444"))
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+        assertThat(mockWebServer.getRequestCount()).isEqualTo(2);
+    }
+
+}
@@ -0,0 +1,85 @@
+package com.restaurant.orderservice.web;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+import com.restaurant.orderservice.config.ClientProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+
+class FoodRequestCoalescerTests {
+
+    private FoodRequestCoalescer coalescer;
+
+    @AfterEach
+    void clean() {
+        if (coalescer != null) {
+            coalescer.dispose();
+        }
+    }
+
+    private FoodRequestCoalescer coalescer(Map<String, String> properties, Duration timeout,
+                                           Function<List<String>, Flux<Food>> bulkLookup) {
+        var batchProperties = new Binder(new MapConfigurationPropertySource(properties))
+                .bindOrCreate("restaurant.food-batch", ClientProperties.FoodBatch.class);
+        return new FoodRequestCoalescer(batchProperties, timeout, bulkLookup, ref -> Mono.empty(),
+                new SimpleMeterRegistry());
+    }
+
+    private static Food food(String ref) {
+        return new Food(ref, "desc", "Mr Chef", 9.90);
+    }
+
+    @Test
+    void whenManyBatchesInFlightWithSlowLookupsThenEveryLookupAnswered() {
+        // Lookups trickle in, so most batches are flushed by the window timer, and the slow
+        // bulk lookup keeps more than 256 of them in flight at once.
+        this.coalescer = coalescer(Map.of(
+                        "restaurant.food-batch.max-size", "10",
+                        "restaurant.food-batch.window", "1ms"),
+                Duration.ofSeconds(5),
+                refs -> Flux.fromIterable(refs).map(FoodRequestCoalescerTests::food)
+                        .delaySubscription(Duration.ofSeconds(1)));
+
+        StepVerifier.create(Flux.range(0, 600)
+                        .delayElements(Duration.ofMillis(1))
+                        .flatMap(i -> coalescer.getFoodByRef(String.valueOf(i)), 600))
+                .expectNextCount(600)
+                .expectComplete()
+                .verify(Duration.ofSeconds(15));
+    }
+
+    @Test
+    void whenLookupNeverAnswersThenTimesOut() {
+        this.coalescer = coalescer(Map.of(), Duration.ofMillis(200), refs -> Flux.never());
+
+        StepVerifier.create(coalescer.getFoodByRef("1234567890"))
+                .expectError(TimeoutException.class)
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void whenTooManyLookupsWaitingThenRejected() {
+        this.coalescer = coalescer(Map.of(
+                        "restaurant.food-batch.max-size", "100",
+                        "restaurant.food-batch.window", "1h",
+                        "restaurant.food-batch.max-pending", "2"),
+                Duration.ofSeconds(5), refs -> Flux.never());
+
+        coalescer.getFoodByRef("1").subscribe();
+        coalescer.getFoodByRef("2").subscribe();
+        StepVerifier.create(coalescer.getFoodByRef("3"))
+                .expectError(IllegalStateException.class)
+                .verify(Duration.ofSeconds(5));
+    }
+}
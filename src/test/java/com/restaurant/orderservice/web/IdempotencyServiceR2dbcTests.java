@@ -0,0 +1,255 @@
+package com.restaurant.orderservice.web;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.restaurant.orderservice.config.DataConfig;
+import com.restaurant.orderservice.config.IdempotencyProperties;
+import com.restaurant.orderservice.domain.Order;
+import com.restaurant.orderservice.domain.OrderRepository;
+import com.restaurant.orderservice.domain.OrderService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.autoconfigure.data.r2dbc.DataR2dbcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.web.server.ResponseStatusException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.mock;
+
+@DataR2dbcTest
+@Import({DataConfig.class, IdempotencyService.class, IdempotencyServiceR2dbcTests.MetricsConfig.class})
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@EnableConfigurationProperties(IdempotencyProperties.class)
+@Testcontainers
+class IdempotencyServiceR2dbcTests {
+
+    @Container
+    static PostgreSQLContainer<?> postgresql =
+            new PostgreSQLContainer<>(DockerImageName.parse("postgres:14.4"));
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    @Autowired
+    private TransactionalOperator transactionalOperator;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @DynamicPropertySource
+    static void postgresqlProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.r2dbc.url", IdempotencyServiceR2dbcTests::r2dbcUrl);
+        registry.add("spring.r2dbc.username", postgresql::getUsername);
+        registry.add("spring.r2dbc.password", postgresql::getPassword);
+        registry.add("spring.flyway.url", postgresql::getJdbcUrl);
+    }
+
+    private static String r2dbcUrl() {
+        return String.format("r2dbc:postgresql://%s:%s/%s",
+                postgresql.getHost(),
+                postgresql.getMappedPort(PostgreSQLContainer.POSTGRESQL_PORT),
+                postgresql.getDatabaseName());
+    }
+
+    @Test
+    void whenSameKeyRepeatedThenSubmittedOnce() {
+        var orderRequest = new OrderRequest("1234567890", 2);
+        var submissions = new AtomicInteger();
+        var submission = submission(submissions, 1L);
+
+        var firstOrder = idempotencyService.submitOnce("jack", "repeat", orderRequest, submission).block();
+        var secondOrder = idempotencyService.submitOnce("jack", "repeat", orderRequest, submission).block();
+
+        assertThat(submissions).hasValue(1);
+        assertThat(secondOrder).isEqualTo(firstOrder);
+    }
+
+    @Test
+    void whenConcurrentDuplicatesThenWaitForFirstResult() {
+        var orderRequest = new OrderRequest("1234567890", 2);
+        var submissions = new AtomicInteger();
+        Function<UnaryOperator<Mono<Order>>, Mono<Order>> submission = persist ->
+                submission(submissions, 2L).apply(persist).delayElement(Duration.ofMillis(200));
+
+        StepVerifier.create(Flux.range(0, 5)
+                        .flatMap(i -> idempotencyService.submitOnce("jack", "concurrent", orderRequest, submission))
+                        .map(Order::id)
+                        .distinct())
+                .expectNext(2L)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+        assertThat(submissions).hasValue(1);
+    }
+
+    @Test
+    void whenKeyCompletedByAnotherInstanceThenStoredResponseReplayed() throws Exception {
+        var orderRequest = new OrderRequest("1234567890", 2);
+        var storedOrder = withId(3L);
+        var claimed = idempotencyRecordRepository.claim("will", "replayed", "1234567890:2", 10).block();
+        idempotencyRecordRepository.complete(claimed.id(), objectMapper.writeValueAsString(storedOrder)).block();
+        var submissions = new AtomicInteger();
+
+        StepVerifier.create(idempotencyService.submitOnce("will", "replayed", orderRequest, submission(submissions, 4L)))
+                .expectNextMatches(order -> order.id().equals(3L))
+                .verifyComplete();
+        assertThat(submissions).hasValue(0);
+    }
+
+    @Test
+    void whenKeyCompletedThenFoodNotLookedUpAgain() throws Exception {
+        var storedOrder = withId(7L);
+        var claimed = idempotencyRecordRepository.claim("will", "completed", "1234567890:2", 10).block();
+        idempotencyRecordRepository.complete(claimed.id(), objectMapper.writeValueAsString(storedOrder)).block();
+        var foodClient = mock(FoodClient.class);
+        // Like OrderService, the food is looked up before the order is persisted.
+        Function<UnaryOperator<Mono<Order>>, Mono<Order>> submission = persist -> foodClient.lookupFood("1234567890")
+                .then(persist.apply(Mono.just(withId(8L))));
+
+        StepVerifier.create(idempotencyService.submitOnce("will", "completed", new OrderRequest("1234567890", 3),
+                        submission))
+                .expectError(ResponseStatusException.class)
+                .verify();
+        StepVerifier.create(idempotencyService.submitOnce("will", "completed", new OrderRequest("1234567890", 2),
+                        submission))
+                .expectNextMatches(order -> order.id().equals(7L))
+                .verifyComplete();
+        then(foodClient).shouldHaveNoInteractions();
+    }
+
+    @Test
+    void whenKeyReusedForDifferentOrderThenRejected() {
+        var submissions = new AtomicInteger();
+        idempotencyService.submitOnce("jack", "reused", new OrderRequest("1234567890", 2), submission(submissions, 5L))
+                .block();
+
+        StepVerifier.create(idempotencyService.submitOnce("jack", "reused", new OrderRequest("1234567890", 3),
+                        submission(submissions, 6L)))
+                .expectError(ResponseStatusException.class)
+                .verify();
+    }
+
+    @Test
+    void whenSubmissionFailsThenKeyReleased() {
+        var orderRequest = new OrderRequest("1234567890", 2);
+        StepVerifier.create(idempotencyService.submitOnce("jack", "failing", orderRequest,
+                        persist -> Mono.error(new IllegalStateException("boom"))))
+                .expectError(IllegalStateException.class)
+                .verify();
+
+        var submissions = new AtomicInteger();
+        StepVerifier.create(idempotencyService.submitOnce("jack", "failing", orderRequest, submission(submissions, 7L)))
+                .expectNextMatches(order -> order.id().equals(7L))
+                .verifyComplete();
+    }
+
+    @Test
+    void whenSubmissionFailsAfterSaveThenOrderAndClaimRolledBack() {
+        var orderRequest = new OrderRequest("1234567890", 2);
+        var savedOrder = new AtomicReference<Order>();
+        Function<UnaryOperator<Mono<Order>>, Mono<Order>> failing = persist ->
+                persist.apply(orderRepository.save(OrderService.buildRejectedOrder("1234567890", 2)))
+                        .doOnNext(savedOrder::set)
+                        .then(Mono.<Order>error(new IllegalStateException("boom")))
+                        .as(transactionalOperator::transactional);
+        StepVerifier.create(idempotencyService.submitOnce("jack", "rolled-back", orderRequest, failing))
+                .expectError(IllegalStateException.class)
+                .verify();
+
+        assertThat(savedOrder.get()).isNotNull();
+        StepVerifier.create(orderRepository.findById(savedOrder.get().id()))
+                .verifyComplete();
+        StepVerifier.create(idempotencyRecordRepository.findByUserIdAndIdempotencyKey("jack", "rolled-back"))
+                .verifyComplete();
+    }
+
+    @Test
+    void whenClaimAbandonedThenKeyClaimedAgain() {
+        var orderRequest = new OrderRequest("1234567890", 2);
+        idempotencyRecordRepository.claim("jack", "abandoned", "1234567890:2", 10).block();
+        databaseClient.sql("UPDATE order_idempotency SET created_date = created_date - interval '1 minute'")
+                .fetch().rowsUpdated().block();
+
+        var submissions = new AtomicInteger();
+        StepVerifier.create(idempotencyService.submitOnce("jack", "abandoned", orderRequest,
+                        submission(submissions, 8L)))
+                .expectNextMatches(order -> order.id().equals(8L))
+                .verifyComplete();
+        assertThat(submissions).hasValue(1);
+    }
+
+    @Test
+    void whenKeyOlderThanRetentionThenSwept() {
+        var submissions = new AtomicInteger();
+        idempotencyService.submitOnce("jack", "expired", new OrderRequest("1234567890", 2),
+                submission(submissions, 9L)).block();
+        idempotencyService.submitOnce("jack", "kept", new OrderRequest("1234567890", 2),
+                submission(submissions, 10L)).block();
+        databaseClient.sql("UPDATE order_idempotency SET created_date = created_date - interval '2 days' "
+                        + "WHERE idempotency_key = 'expired'")
+                .fetch().rowsUpdated().block();
+
+        StepVerifier.create(idempotencyService.sweep())
+                .expectNext(1)
+                .verifyComplete();
+        StepVerifier.create(idempotencyRecordRepository.findByUserIdAndIdempotencyKey("jack", "kept"))
+                .expectNextCount(1)
+                .verifyComplete();
+    }
+
+    private Function<UnaryOperator<Mono<Order>>, Mono<Order>> submission(AtomicInteger submissions, Long orderId) {
+        return persist -> persist.apply(Mono.fromSupplier(() -> {
+                    submissions.incrementAndGet();
+                    return withId(orderId);
+                }))
+                .as(transactionalOperator::transactional);
+    }
+
+    private static Order withId(Long orderId) {
+        var order = OrderService.buildRejectedOrder("1234567890", 2);
+        return new Order(orderId, order.foodRef(), order.foodDescription(), order.quantity(), order.foodPrice(),
+                order.status(), null, null, "jack", "jack", 1);
+    }
+
+    @TestConfiguration
+    static class MetricsConfig {
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+}
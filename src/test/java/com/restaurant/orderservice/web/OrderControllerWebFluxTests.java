@@ -1,25 +1,50 @@
 package com.restaurant.orderservice.web;
 
+import com.restaurant.orderservice.config.CodecConfig;
+import com.restaurant.orderservice.config.OrderEventsProperties;
 import com.restaurant.orderservice.config.SecurityConfig;
 import com.restaurant.orderservice.domain.Order;
+import com.restaurant.orderservice.domain.OrderCursor;
+import com.restaurant.orderservice.domain.OrderListVersion;
 import com.restaurant.orderservice.domain.OrderService;
 import com.restaurant.orderservice.domain.OrderStatus;
+import com.restaurant.orderservice.domain.OrderStatusHub;
+import com.restaurant.orderservice.domain.OrderSummary;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
 import org.springframework.security.test.web.reactive.server.SecurityMockServerConfigurers;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 
 @WebFluxTest(OrderController.class)
 @Import(SecurityConfig.class)
+@EnableConfigurationProperties(OrderEventsProperties.class)
 public class OrderControllerWebFluxTests {
 
     @Autowired
@@ -27,8 +52,20 @@ public class OrderControllerWebFluxTests {
     @MockBean
     private OrderService orderService;
     @MockBean
+    private IdempotencyService idempotencyService;
+    @MockBean
+    private OrderStatusHub orderStatusHub;
+    @MockBean
     ReactiveJwtDecoder reactiveJwtDecoder;
 
+    private static final OrderListVersion LIST_VERSION =
+            new OrderListVersion(2, 12L, 3L, Instant.parse("2022-10-02T10:00:00Z"));
+
+    @BeforeEach
+    void setup() {
+        given(orderService.getOrderListVersion("jack")).willReturn(Mono.just(LIST_VERSION));
+    }
+
     @Test
     void whenFoodNotAvailableThenRejectOrder() {
         var orderRequest = new OrderRequest("4546745467", 3);
@@ -50,4 +87,271 @@ public class OrderControllerWebFluxTests {
                     assertThat(actualOrder.status()).isEqualTo(OrderStatus.REJECTED);
                 });
     }
-}
\ No newline at end of file
+
+    @Test
+    void whenBatchSubmittedThenResultPerLine() {
+        var orderRequests = List.of(new OrderRequest("4546745467", 3), new OrderRequest("4546745468", 1));
+        var acceptedOrder = Order.of("4546745467", "desc - Mr Chef", 3, 9.90, OrderStatus.ACCEPTED);
+        var rejectedOrder = OrderService.buildRejectedOrder("4546745468", 1);
+        given(orderService.submitOrders(orderRequests))
+                .willReturn(Flux.just(acceptedOrder, rejectedOrder));
+        webClient
+                .mutateWith(SecurityMockServerConfigurers.mockJwt()
+                        .authorities(new SimpleGrantedAuthority("ROLE_customer")))
+                .post()
+                .uri("/orders/batch")
+                .bodyValue(new OrderBatchRequest(orderRequests))
+                .exchange()
+                .expectStatus().is2xxSuccessful()
+                .expectBodyList(Order.class).value(actualOrders -> {
+                    assertThat(actualOrders).hasSize(2);
+                    assertThat(actualOrders.get(0).status()).isEqualTo(OrderStatus.ACCEPTED);
+                    assertThat(actualOrders.get(1).status()).isEqualTo(OrderStatus.REJECTED);
+                });
+    }
+
+    @Test
+    void whenBatchContainsInvalidLineThenBadRequest() {
+        var orderRequests = List.of(new OrderRequest("4546745467", 3), new OrderRequest("4546745468", 7));
+        webClient
+                .mutateWith(SecurityMockServerConfigurers.mockJwt()
+                        .authorities(new SimpleGrantedAuthority("ROLE_customer")))
+                .post()
+                .uri("/orders/batch")
+                .bodyValue(new OrderBatchRequest(orderRequests))
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    void whenMoreOrdersThanPageSizeThenNextLinkReturned() {
+        var first = new Order(12L, "4546745467", "desc", 1, 9.90, OrderStatus.ACCEPTED,
+                Instant.parse("2022-10-02T10:00:00Z"), null, "jack", "jack", 1);
+        var second = new Order(11L, "4546745467", "desc", 1, 9.90, OrderStatus.ACCEPTED,
+                Instant.parse("2022-10-01T10:00:00Z"), null, "jack", "jack", 1);
+        var third = new Order(10L, "4546745467", "desc", 1, 9.90, OrderStatus.ACCEPTED,
+                Instant.parse("2022-09-30T10:00:00Z"), null, "jack", "jack", 1);
+        given(orderService.getOrders(eq("jack"), isNull(), eq(3), eq(LIST_VERSION)))
+                .willReturn(Flux.just(first, second, third));
+        var expectedCursor = OrderCursor.of(second).encode();
+        webClient
+                .mutateWith(SecurityMockServerConfigurers.mockJwt().jwt(jwt -> jwt.subject("jack")))
+                .get()
+                .uri("/orders?size=2")
+                .exchange()
+                .expectStatus().is2xxSuccessful()
+                .expectHeader().valueEquals(HttpHeaders.LINK,
+                        "</orders?after=" + expectedCursor + "&size=2>; rel=\"next\"")
+                .expectBodyList(Order.class).value(actualOrders ->
+                        assertThat(actualOrders).extracting(Order::id).containsExactly(12L, 11L));
+    }
+
+    @Test
+    void whenCursorGivenThenNextPageRequested() {
+        var cursor = new OrderCursor(Instant.parse("2022-10-01T10:00:00Z"), 11L);
+        given(orderService.getOrders(eq("jack"), eq(cursor), eq(51), eq(LIST_VERSION)))
+                .willReturn(Flux.empty());
+        webClient
+                .mutateWith(SecurityMockServerConfigurers.mockJwt().jwt(jwt -> jwt.subject("jack")))
+                .get()
+                .uri("/orders?after=" + cursor.encode())
+                .exchange()
+                .expectStatus().is2xxSuccessful()
+                .expectHeader().doesNotExist(HttpHeaders.LINK)
+                .expectBodyList(Order.class).hasSize(0);
+    }
+
+    @Test
+    void whenCursorInvalidThenBadRequest() {
+        webClient
+                .mutateWith(SecurityMockServerConfigurers.mockJwt().jwt(jwt -> jwt.subject("jack")))
+                .get()
+                .uri("/orders?after=not-a-cursor")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    void whenNdjsonAcceptedThenOrdersStreamed() {
+        var order = OrderService.buildRejectedOrder("4546745467", 1);
+        given(orderService.getAllOrders("jack")).willReturn(Flux.just(order, order));
+        webClient
+                .mutateWith(SecurityMockServerConfigurers.mockJwt().jwt(jwt -> jwt.subject("jack")))
+                .get()
+                .uri("/orders")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().is2xxSuccessful()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .returnResult(Order.class).getResponseBody()
+                .as(StepVerifier::create)
+                .expectNextCount(2)
+                .verifyComplete();
+    }
+
+    @Test
+    void whenAnyAcceptedThenJsonArrayReturned() {
+        given(orderService.getOrders(eq("jack"), isNull(), any(Integer.class), any()))
+                .willReturn(Flux.empty());
+        webClient
+                .mutateWith(SecurityMockServerConfigurers.mockJwt().jwt(jwt -> jwt.subject("jack")))
+                .get()
+                .uri("/orders")
+                .accept(MediaType.ALL)
+                .exchange()
+                .expectStatus().is2xxSuccessful()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_JSON);
+    }
+
+    @Test
+    void whenListUnchangedSinceEtagThenNotModifiedWithoutFetchingOrders() {
+        webClient
+                .mutateWith(SecurityMockServerConfigurers.mockJwt().jwt(jwt -> jwt.subject("jack")))
+                .get()
+                .uri("/orders")
+                .ifNoneMatch("W/\"" + LIST_VERSION.tag() + "\"")
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "W/\"" + LIST_VERSION.tag() + "\"")
+                .expectBody().isEmpty();
+
+        verify(orderService, never()).getOrders(any(), any(), any(Integer.class), any());
+    }
+
+    @Test
+    void whenListUnchangedSinceLastModifiedThenNotModified() {
+        webClient
+                .mutateWith(SecurityMockServerConfigurers.mockJwt().jwt(jwt -> jwt.subject("jack")))
+                .get()
+                .uri("/orders")
+                .ifModifiedSince(LIST_VERSION.lastModifiedDate().atZone(ZoneOffset.UTC))
+                .exchange()
+                .expectStatus().isNotModified();
+
+        verify(orderService, never()).getOrders(any(), any(), any(Integer.class), any());
+    }
+
+    @Test
+    void whenListChangedWithinCurrentSecondThenIfModifiedSinceIgnored() throws InterruptedException {
+        // The client's copy is from earlier in the same second as the latest change. Starting
+        // at the top of a second keeps the request within it.
+        Thread.sleep(1000 - Instant.now().getNano() / 1_000_000);
+        var changedNow = new OrderListVersion(3, 13L, 4L, Instant.now());
+        given(orderService.getOrderListVersion("jack")).willReturn(Mono.just(changedNow));
+        given(orderService.getOrders(eq("jack"), isNull(), any(Integer.class), any()))
+                .willReturn(Flux.empty());
+        webClient
+                .mutateWith(SecurityMockServerConfigurers.mockJwt().jwt(jwt -> jwt.subject("jack")))
+                .get()
+                .uri("/orders")
+                .ifModifiedSince(changedNow.lastModifiedDate().atZone(ZoneOffset.UTC))
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "W/\"" + changedNow.tag() + "\"")
+                .expectHeader().doesNotExist(HttpHeaders.LAST_MODIFIED);
+    }
+
+    @Test
+    void whenListChangedSinceEtagThenOrdersReturnedWithNewEtag() {
+        var order = new Order(12L, "4546745467", "desc", 1, 9.90, OrderStatus.ACCEPTED,
+                Instant.parse("2022-10-02T10:00:00Z"), Instant.parse("2022-10-02T10:00:00Z"), "jack", "jack", 1);
+        given(orderService.getOrders(eq("jack"), isNull(), any(Integer.class), any()))
+                .willReturn(Flux.just(order));
+        webClient
+                .mutateWith(SecurityMockServerConfigurers.mockJwt().jwt(jwt -> jwt.subject("jack")))
+                .get()
+                .uri("/orders")
+                .ifNoneMatch("W/\"outdated\"")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "W/\"" + LIST_VERSION.tag() + "\"")
+                .expectHeader().lastModified(LIST_VERSION.lastModifiedDate().toEpochMilli())
+                .expectBodyList(Order.class).contains(order).hasSize(1);
+    }
+
+    @Test
+    void whenSmileAcceptedThenOrdersReturnedAsSmile() {
+        var order = new Order(12L, "4546745467", "desc - Mr Chef", 1, 9.90, OrderStatus.ACCEPTED,
+                Instant.parse("2022-10-01T10:00:00Z"), Instant.parse("2022-10-01T10:00:00Z"), "jack", "jack", 1);
+        given(orderService.getOrders(eq("jack"), isNull(), any(Integer.class), any()))
+                .willReturn(Flux.just(order));
+        webClient
+                .mutateWith(SecurityMockServerConfigurers.mockJwt().jwt(jwt -> jwt.subject("jack")))
+                .get()
+                .uri("/orders")
+                .accept(CodecConfig.APPLICATION_SMILE)
+                .exchange()
+                .expectStatus().is2xxSuccessful()
+                .expectHeader().contentTypeCompatibleWith(CodecConfig.APPLICATION_SMILE)
+                .expectBodyList(Order.class).value(actualOrders ->
+                        assertThat(actualOrders).containsExactly(order));
+    }
+
+    @Test
+    void whenIdempotencyKeyGivenThenSubmittedOnce() {
+        var orderRequest = new OrderRequest("4546745467", 3);
+        var expectedOrder = OrderService.buildRejectedOrder(orderRequest.ref(), orderRequest.quantity());
+        given(idempotencyService.submitOnce(eq("jack"), eq("key-1"), eq(orderRequest), any()))
+                .willReturn(Mono.just(expectedOrder));
+        webClient
+                .mutateWith(SecurityMockServerConfigurers.mockJwt().jwt(jwt -> jwt.subject("jack")))
+                .post()
+                .uri("/orders")
+                .header("Idempotency-Key", "key-1")
+                .bodyValue(orderRequest)
+                .exchange()
+                .expectStatus().is2xxSuccessful()
+                .expectBody(Order.class).value(actualOrder ->
+                        assertThat(actualOrder.status()).isEqualTo(OrderStatus.REJECTED));
+    }
+
+    @Test
+    void whenIdempotencyKeyTooLongThenBadRequest() {
+        webClient
+                .mutateWith(SecurityMockServerConfigurers.mockJwt().jwt(jwt -> jwt.subject("jack")))
+                .post()
+                .uri("/orders")
+                .header("Idempotency-Key", "k".repeat(256))
+                .bodyValue(new OrderRequest("4546745467", 3))
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    void whenOrderStatusChangesThenStreamedAsServerSentEvents() {
+        var dispatchedOrder = new Order(7L, "4546745467", "desc - Mr Chef", 3, 9.90, OrderStatus.DISPATCHED,
+                Instant.now(), Instant.now(), "jack", "jack", 2);
+        given(orderStatusHub.subscribe("jack")).willReturn(Flux.just(dispatchedOrder));
+        webClient
+                .mutateWith(SecurityMockServerConfigurers.mockJwt().jwt(jwt -> jwt.subject("jack")))
+                .get()
+                .uri("/orders/events")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus().is2xxSuccessful()
+                .expectHeader().contentTypeCompatibleWith(MediaType.TEXT_EVENT_STREAM)
+                .returnResult(new ParameterizedTypeReference<ServerSentEvent<Order>>() {
+                })
+                .getResponseBody()
+                .as(StepVerifier::create)
+                .assertNext(event -> {
+                    assertThat(event.id()).isEqualTo("7");
+                    assertThat(event.event()).isEqualTo("DISPATCHED");
+                    assertThat(event.data()).isEqualTo(dispatchedOrder);
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void whenSummaryRequestedThenAggregatesOfUserReturned() {
+        var summary = new OrderSummary("jack", 3, 1, 1, new BigDecimal("29.70"), Instant.now());
+        given(orderService.getSummary("jack")).willReturn(Mono.just(summary));
+        webClient
+                .mutateWith(SecurityMockServerConfigurers.mockJwt().jwt(jwt -> jwt.subject("jack")))
+                .get()
+                .uri("/orders/summary")
+                .exchange()
+                .expectStatus().is2xxSuccessful()
+                .expectBody(OrderSummary.class).isEqualTo(summary);
+    }
+}